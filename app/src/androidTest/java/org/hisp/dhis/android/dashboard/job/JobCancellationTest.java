@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.job;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobCancellationTest extends InstrumentationTestCase {
+    /* keeps test jobs away from ids used by DhisService */
+    private static final int JOB_ID = (1 << 24) - 1;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    public void testCancellationIsDeliveredToCoalescedCallers() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+
+        JobExecutor.enqueueJob(new BlockingJob(started), first);
+        JobExecutor.enqueueJob(new BlockingJob(started), second);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(JobExecutor.cancel(JOB_ID));
+        assertTrue(first.await());
+        assertTrue(second.await());
+        getInstrumentation().waitForIdleSync();
+
+        assertEquals(1, first.mCancelled.get());
+        assertEquals(1, second.mCancelled.get());
+        assertEquals(0, first.mFinished.get() + second.mFinished.get());
+        assertFalse(JobExecutor.isJobRunning(JOB_ID));
+    }
+
+    public void testJobIsNotCoalescedWithCancelledOne() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        RecordingCallback cancelled = new RecordingCallback();
+        JobExecutor.enqueueJob(new BlockingJob(started), cancelled);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(JobExecutor.cancel(JOB_ID));
+
+        // caller which comes after cancellation gets result of its own job
+        RecordingCallback next = new RecordingCallback();
+        JobExecutor.enqueueJob(new Job<Boolean>(JOB_ID) {
+
+            @Override
+            public Boolean inBackground() {
+                return true;
+            }
+        }, next);
+
+        assertTrue(cancelled.await());
+        assertTrue(next.await());
+        assertEquals(1, cancelled.mCancelled.get());
+        assertEquals(1, next.mFinished.get());
+        assertEquals(0, next.mCancelled.get());
+    }
+
+    private static class BlockingJob extends Job<Boolean> {
+        private final CountDownLatch mStarted;
+
+        BlockingJob(CountDownLatch started) {
+            super(JOB_ID);
+            mStarted = started;
+        }
+
+        @Override
+        public Boolean inBackground() {
+            mStarted.countDown();
+            try {
+                // blocks until interrupted by cancellation
+                new CountDownLatch(1).await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+
+    private static class RecordingCallback implements Job.Callback<Boolean> {
+        final AtomicInteger mFinished = new AtomicInteger();
+        final AtomicInteger mCancelled = new AtomicInteger();
+        final CountDownLatch mCalled = new CountDownLatch(1);
+
+        @Override
+        public void onJobFinished(Boolean result) {
+            mFinished.incrementAndGet();
+            mCalled.countDown();
+        }
+
+        @Override
+        public void onJobCancelled() {
+            mCancelled.incrementAndGet();
+            mCalled.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return mCalled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
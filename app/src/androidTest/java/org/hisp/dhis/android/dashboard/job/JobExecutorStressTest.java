@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.job;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Hammers JobExecutor from several threads at once and checks
+ * that bookkeeping stays consistent: every job runs exactly once,
+ * every callback is called exactly once and no job id is leaked.
+ */
+public class JobExecutorStressTest extends InstrumentationTestCase {
+    /* keeps test jobs away from ids used by DhisService */
+    private static final int JOB_ID_OFFSET = 1 << 24;
+    private static final int THREADS = 8;
+    private static final int JOBS_PER_THREAD = 250;
+    private static final int SHARED_JOBS = 16;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    public void testUniqueJobsRunExactlyOnce() throws InterruptedException {
+        final int jobCount = THREADS * JOBS_PER_THREAD;
+        final AtomicIntegerArray runs = new AtomicIntegerArray(jobCount);
+        final AtomicIntegerArray results = new AtomicIntegerArray(jobCount);
+        final CountDownLatch finished = new CountDownLatch(jobCount);
+
+        runConcurrently(new Worker() {
+
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < JOBS_PER_THREAD; i++) {
+                    final int index = thread * JOBS_PER_THREAD + i;
+                    Job.Priority priority = Job.Priority.values()[index % Job.Priority.values().length];
+                    JobExecutor.enqueueJob(new CountingJob(JOB_ID_OFFSET + index, priority, runs, index),
+                            new Job.Callback<Integer>() {
+
+                                @Override
+                                public void onJobFinished(Integer result) {
+                                    results.incrementAndGet(result);
+                                    finished.countDown();
+                                }
+
+                                @Override
+                                public void onJobCancelled() {
+                                    // test jobs are never cancelled
+                                }
+                            });
+
+                    // reading bookkeeping while other threads are modifying it
+                    JobExecutor.isJobRunning(JOB_ID_OFFSET + (index + 1) % jobCount);
+                }
+            }
+        });
+
+        assertTrue("Not all jobs have finished in time",
+                finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        getInstrumentation().waitForIdleSync();
+
+        for (int i = 0; i < jobCount; i++) {
+            assertEquals("Job " + i + " run count", 1, runs.get(i));
+            assertEquals("Job " + i + " callback count", 1, results.get(i));
+            assertFalse("Job " + i + " is still enqueued", JobExecutor.isJobRunning(JOB_ID_OFFSET + i));
+        }
+    }
+
+    public void testDuplicateJobsDeliverResultToEveryCaller() throws InterruptedException {
+        final int callerCount = THREADS * JOBS_PER_THREAD;
+        final AtomicIntegerArray runs = new AtomicIntegerArray(SHARED_JOBS);
+        final AtomicInteger callbacks = new AtomicInteger();
+        final AtomicInteger wrongResults = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(callerCount);
+
+        runConcurrently(new Worker() {
+
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < JOBS_PER_THREAD; i++) {
+                    final int index = (thread + i) % SHARED_JOBS;
+                    JobExecutor.enqueueJob(new CountingJob(JOB_ID_OFFSET + index, Job.Priority.NORMAL, runs, index),
+                            new Job.Callback<Integer>() {
+
+                                @Override
+                                public void onJobFinished(Integer result) {
+                                    // callbacks run on main thread, where failed assertion would crash
+                                    if (result != index) {
+                                        wrongResults.incrementAndGet();
+                                    }
+                                    callbacks.incrementAndGet();
+                                    finished.countDown();
+                                }
+
+                                @Override
+                                public void onJobCancelled() {
+                                    // test jobs are never cancelled
+                                }
+                            });
+                }
+            }
+        });
+
+        assertTrue("Not all callers got result in time",
+                finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        getInstrumentation().waitForIdleSync();
+        assertEquals(callerCount, callbacks.get());
+        assertEquals(0, wrongResults.get());
+
+        int totalRuns = 0;
+        for (int i = 0; i < SHARED_JOBS; i++) {
+            // coalesced callers share one run, so each id runs at least once,
+            // but never more often than it was enqueued
+            assertTrue("Job " + i + " has never run", runs.get(i) >= 1);
+            assertFalse("Job " + i + " is still enqueued", JobExecutor.isJobRunning(JOB_ID_OFFSET + i));
+            totalRuns += runs.get(i);
+        }
+        assertTrue(totalRuns <= callerCount);
+    }
+
+    private static void runConcurrently(final Worker worker) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicInteger failures = new AtomicInteger();
+
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        worker.run(thread);
+                    } catch (Throwable throwable) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "JobExecutorStressTest #" + i).start();
+        }
+
+        // releasing all threads at once to maximize contention
+        start.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    private static class CountingJob extends Job<Integer> {
+        private final AtomicIntegerArray mRuns;
+        private final int mIndex;
+
+        CountingJob(int jobId, Priority priority, AtomicIntegerArray runs, int index) {
+            super(jobId, Type.CPU, priority);
+            mRuns = runs;
+            mIndex = index;
+        }
+
+        @Override
+        public Integer inBackground() {
+            mRuns.incrementAndGet(mIndex);
+            return mIndex;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.job;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class JobMetricsTest extends InstrumentationTestCase {
+    /* keeps test jobs away from ids used by DhisService */
+    private static final int JOB_ID = (1 << 24) - 2;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        JobMetrics.reset();
+    }
+
+    public void testFinishedJobIsRecorded() throws InterruptedException {
+        runJob(new Job<Boolean>(JOB_ID) {
+
+            @Override
+            public Boolean inBackground() {
+                return true;
+            }
+        });
+
+        JobMetrics.Snapshot snapshot = JobMetrics.getSnapshot(JOB_ID);
+        assertEquals(1, snapshot.getEnqueuedCount());
+        assertEquals(1, snapshot.getSucceededCount());
+        assertEquals(0, snapshot.getFailedCount());
+        assertEquals(0, snapshot.getCancelledCount());
+        assertEquals(0, snapshot.getRunningCount());
+        assertEquals(1, snapshot.getMaxRunningCount());
+        assertEquals(1, snapshot.getQueueWait().getCount());
+        assertEquals(1, snapshot.getRunTime().getCount());
+    }
+
+    public void testResetKeepsRunningJobsCounted() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Job<Boolean> job = new Job<Boolean>(JOB_ID) {
+
+            @Override
+            public Boolean inBackground() {
+                started.countDown();
+                try {
+                    release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+
+        CountDownLatch finished = enqueueJob(job);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        int runningJobs = JobMetrics.getRunningJobsCount();
+
+        JobMetrics.reset();
+        assertEquals(1, JobMetrics.getSnapshot(JOB_ID).getRunningCount());
+        assertEquals(0, JobMetrics.getSnapshot(JOB_ID).getEnqueuedCount());
+
+        release.countDown();
+        assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        getInstrumentation().waitForIdleSync();
+
+        // job which was started before reset must not drive counts below zero
+        JobMetrics.Snapshot snapshot = JobMetrics.getSnapshot(JOB_ID);
+        assertEquals(0, snapshot.getRunningCount());
+        assertEquals(1, snapshot.getSucceededCount());
+        assertEquals(runningJobs - 1, JobMetrics.getRunningJobsCount());
+    }
+
+    public void testHistogramPercentiles() {
+        JobMetrics.Histogram histogram = new JobMetrics.Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+
+        JobMetrics.HistogramSnapshot snapshot = new JobMetrics.HistogramSnapshot(histogram);
+        assertEquals(100, snapshot.getCount());
+        assertEquals(12, snapshot.getMean());
+        assertEquals(100, snapshot.getMax());
+
+        // values are reported as upper bounds of power-of-two buckets
+        assertEquals(4, snapshot.getPercentile(50));
+        assertEquals(4, snapshot.getPercentile(90));
+        assertEquals(100, snapshot.getPercentile(99));
+
+        histogram.reset();
+        assertEquals(0, new JobMetrics.HistogramSnapshot(histogram).getCount());
+    }
+
+    private void runJob(Job<Boolean> job) throws InterruptedException {
+        assertTrue(enqueueJob(job).await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private static CountDownLatch enqueueJob(Job<Boolean> job) {
+        final CountDownLatch finished = new CountDownLatch(1);
+        JobExecutor.enqueueJob(job, new Job.Callback<Boolean>() {
+
+            @Override
+            public void onJobFinished(Boolean result) {
+                finished.countDown();
+            }
+
+            @Override
+            public void onJobCancelled() {
+                finished.countDown();
+            }
+        });
+        return finished;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.sdk.models.common.Access;
+import org.hisp.dhis.android.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardElement;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardItem;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardItemContent;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Seeds dashboards of growing size into local database and measures how long
+ * it takes to load items of one of them together with their elements. Dashboards
+ * which were seeded earlier stay in database, so each load runs next to rows of
+ * other dashboards. Timings are logged under tag DashboardItemsBenchmark.
+ * Seeded dashboards are never synced and are removed after each test.
+ */
+public class DashboardItemsBenchmark extends InstrumentationTestCase {
+    private static final String TAG = DashboardItemsBenchmark.class.getSimpleName();
+    private static final int[] ITEM_COUNTS = {5, 10, 20, 40, 80};
+    private static final int WARM_UP_ITERATIONS = 3;
+    private static final int ITERATIONS = 20;
+
+    private List<Dashboard> mSeededDashboards;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSeededDashboards = new ArrayList<>();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (Dashboard dashboard : mSeededDashboards) {
+            Dhis2.dashboards().remove(dashboard);
+        }
+        super.tearDown();
+    }
+
+    public void testElementsBelongToRequestedDashboardOnly() {
+        Set<String> uids = new HashSet<>();
+        Dashboard dashboard = seed(10, uids);
+        seed(10, new HashSet<String>());
+
+        assertLoaded(dashboard, 10, uids);
+    }
+
+    public void testLoadTimeAgainstItemCount() {
+        for (int itemCount : ITEM_COUNTS) {
+            Set<String> uids = new HashSet<>();
+            Dashboard dashboard = seed(itemCount, uids);
+            assertLoaded(dashboard, itemCount, uids);
+
+            long[] times = new long[ITERATIONS];
+            for (int i = -WARM_UP_ITERATIONS; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                DashboardItems.listWithElements(dashboard);
+                if (i >= 0) {
+                    times[i] = (System.nanoTime() - start) / 1000;
+                }
+            }
+
+            Arrays.sort(times);
+            Log.i(TAG, itemCount + " items (" + mSeededDashboards.size() + " dashboards in database): " +
+                    "median " + times[ITERATIONS / 2] + " us, max " + times[ITERATIONS - 1] + " us");
+        }
+    }
+
+    /* creates dashboard with given number of chart items, uids of their elements are added to set */
+    private Dashboard seed(int itemCount, Set<String> uids) {
+        String name = TAG + '_' + itemCount + '_' + System.nanoTime();
+        DateTime now = new DateTime();
+
+        Dashboard dashboard = new Dashboard();
+        dashboard.setName(name);
+        dashboard.setDisplayName(name);
+        dashboard.setCreated(now);
+        dashboard.setLastUpdated(now);
+        dashboard.setAccess(Access.createDefaultAccess());
+        Dhis2.dashboards().add(dashboard);
+
+        // id is assigned by database, so dashboard is read back
+        Dashboard storedDashboard = findDashboard(name);
+        assertNotNull(storedDashboard);
+        mSeededDashboards.add(storedDashboard);
+
+        for (int i = 0; i < itemCount; i++) {
+            String uid = name + '_' + i;
+            DashboardItemContent content = new DashboardItemContent();
+            content.setUId(uid);
+            content.setName(uid);
+            content.setDisplayName(uid);
+            content.setType(DashboardItemContent.TYPE_CHART);
+
+            // each chart takes item of its own
+            Dhis2.dashboards().addDashboardContent(storedDashboard, content);
+            uids.add(uid);
+        }
+        return storedDashboard;
+    }
+
+    private static Dashboard findDashboard(String name) {
+        List<Dashboard> dashboards = Dhis2.dashboards().list();
+        if (dashboards != null) {
+            for (Dashboard dashboard : dashboards) {
+                if (name.equals(dashboard.getName())) {
+                    return dashboard;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void assertLoaded(Dashboard dashboard, int itemCount, Set<String> uids) {
+        List<DashboardItem> items = DashboardItems.listWithElements(dashboard);
+        assertNotNull(items);
+        assertEquals(itemCount, items.size());
+
+        Set<String> loadedUids = new HashSet<>();
+        for (DashboardItem item : items) {
+            assertNotNull(item.getDashboardElements());
+            for (DashboardElement element : item.getDashboardElements()) {
+                assertTrue("Element " + element.getUId() + " belongs to other dashboard",
+                        uids.contains(element.getUId()));
+                loadedUids.add(element.getUId());
+            }
+        }
+        assertEquals(uids, loadedUids);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import org.joda.time.DateTime;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class DashboardSnapshotTest extends AndroidTestCase {
+    private static final DateTime BEFORE = new DateTime(2015, 9, 1, 10, 0);
+    private static final DateTime AFTER = new DateTime(2015, 9, 1, 11, 0);
+
+    /* ids far from those of real rows, since versions are process-wide */
+    private static final long DASHBOARD_ID = 900001;
+    private static final long OTHER_DASHBOARD_ID = 900002;
+
+    public void testUnchangedSnapshotReportsNothing() {
+        assertTrue(snapshot(BEFORE, BEFORE).getChangedDashboards(snapshot(BEFORE, BEFORE)).isEmpty());
+    }
+
+    public void testChangedElementReportsItsDashboardOnly() {
+        Set<Long> changed = snapshot(BEFORE, BEFORE).getChangedDashboards(snapshot(BEFORE, AFTER));
+        assertEquals(Collections.singleton(DASHBOARD_ID), changed);
+    }
+
+    public void testAddedAndRemovedRowsAreReported() {
+        DashboardSnapshot before = new DashboardSnapshot.Builder()
+                .addDashboard(DASHBOARD_ID, BEFORE)
+                .addItem(1, BEFORE)
+                .addDashboard(OTHER_DASHBOARD_ID, BEFORE)
+                .build();
+        DashboardSnapshot after = new DashboardSnapshot.Builder()
+                .addDashboard(DASHBOARD_ID, BEFORE)
+                .addItem(1, BEFORE)
+                .addElement(10, BEFORE)
+                .build();
+
+        Set<Long> expected = new HashSet<>();
+        expected.add(DASHBOARD_ID);
+        expected.add(OTHER_DASHBOARD_ID);
+        assertEquals(expected, before.getChangedDashboards(after));
+    }
+
+    /* element changed on server, while lastUpdated of dashboard did not */
+    public void testChangedElementReloadsDashboardQuery() {
+        CountingQuery query = new CountingQuery(DASHBOARD_ID);
+        CountingQuery otherQuery = new CountingQuery(OTHER_DASHBOARD_ID);
+        query.query(getContext());
+        otherQuery.query(getContext());
+
+        DashboardSnapshot before = new DashboardSnapshot.Builder()
+                .addDashboard(DASHBOARD_ID, BEFORE).addItem(1, BEFORE).addElement(10, BEFORE)
+                .addDashboard(OTHER_DASHBOARD_ID, BEFORE).addItem(2, BEFORE).addElement(20, BEFORE)
+                .build();
+        DashboardSnapshot after = new DashboardSnapshot.Builder()
+                .addDashboard(DASHBOARD_ID, BEFORE).addItem(1, BEFORE).addElement(10, AFTER)
+                .addDashboard(OTHER_DASHBOARD_ID, BEFORE).addItem(2, BEFORE).addElement(20, BEFORE)
+                .build();
+        for (long dashboardId : before.getChangedDashboards(after)) {
+            ChangeVersions.notifyChanged(DashboardSnapshotTest.class, dashboardId);
+        }
+
+        query.query(getContext());
+        otherQuery.query(getContext());
+        assertEquals(2, query.mQueries);
+        assertEquals(1, otherQuery.mQueries);
+    }
+
+    private static DashboardSnapshot snapshot(DateTime itemLastUpdated, DateTime elementLastUpdated) {
+        return new DashboardSnapshot.Builder()
+                .addDashboard(DASHBOARD_ID, BEFORE)
+                .addItem(1, itemLastUpdated)
+                .addElement(10, elementLastUpdated)
+                .addDashboard(OTHER_DASHBOARD_ID, BEFORE)
+                .addItem(2, BEFORE)
+                .build();
+    }
+
+    private static class CountingQuery extends VersionedQuery<Object> {
+        int mQueries;
+
+        CountingQuery(long id) {
+            super(DashboardSnapshotTest.class, id);
+        }
+
+        @Override
+        protected Object querySlice(Context context) {
+            mQueries++;
+            return new Object();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+
+import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
+import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
+
+import java.util.ArrayList;
+
+public class ThrottledDbLoaderTest extends InstrumentationTestCase {
+    private static final int CHANGES_PER_SYNC = 25;
+
+    private CountingLoader mLoader;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+
+            @Override
+            public void run() {
+                mLoader = new CountingLoader(getInstrumentation().getTargetContext());
+                mLoader.startLoading();
+                mLoader.mForcedLoads = 0;
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+
+            @Override
+            public void run() {
+                mLoader.reset();
+            }
+        });
+        super.tearDown();
+    }
+
+    public void testLoaderReloadsOncePerSync() {
+        SyncTransactions.begin();
+        notifyContentChanged(CHANGES_PER_SYNC);
+        assertEquals(0, mLoader.mForcedLoads);
+
+        SyncTransactions.end();
+        getInstrumentation().waitForIdleSync();
+        assertEquals(1, mLoader.mForcedLoads);
+    }
+
+    public void testLoaderReloadsOnceAfterOverlappingSyncs() {
+        SyncTransactions.begin();
+        SyncTransactions.begin();
+        notifyContentChanged(CHANGES_PER_SYNC);
+
+        SyncTransactions.end();
+        getInstrumentation().waitForIdleSync();
+        assertEquals(0, mLoader.mForcedLoads);
+
+        notifyContentChanged(CHANGES_PER_SYNC);
+        SyncTransactions.end();
+        getInstrumentation().waitForIdleSync();
+        assertEquals(1, mLoader.mForcedLoads);
+    }
+
+    public void testLoaderDoesNotReloadAfterSyncWithoutChanges() {
+        SyncTransactions.begin();
+        SyncTransactions.end();
+        getInstrumentation().waitForIdleSync();
+        assertEquals(0, mLoader.mForcedLoads);
+    }
+
+    private void notifyContentChanged(final int count) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    mLoader.onContentChanged();
+                }
+            }
+        });
+    }
+
+    /* counts reloads instead of running query */
+    private static class CountingLoader extends ThrottledDbLoader<Object> {
+        int mForcedLoads;
+
+        CountingLoader(Context context) {
+            super(context, new ArrayList<TrackedTable>(), new Query<Object>() {
+
+                @Override
+                public Object query(Context context) {
+                    return null;
+                }
+            });
+        }
+
+        @Override
+        protected void onForceLoad() {
+            mForcedLoads++;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class WordPrefixIndexTest extends AndroidTestCase {
+    private static final String TAG = WordPrefixIndexTest.class.getSimpleName();
+    private static final String[] WORDS = {"anc", "coverage", "malaria", "cases",
+            "district", "immunization", "by", "month", "facility", "reporting", "rate"};
+    private static final int LABEL_COUNT = 20000;
+    private static final int ITERATIONS = 50;
+
+    public void testFindMatchesLabelAndWordPrefixes() {
+        WordPrefixIndex index = new WordPrefixIndex(Arrays.asList(
+                "ANC Coverage", "Malaria cases by district", null, "ANC visits", "Immunization"));
+
+        assertTrue(Arrays.equals(new int[]{0, 3}, index.find("anc")));
+        assertTrue(Arrays.equals(new int[]{1}, index.find("cas")));
+        assertTrue(Arrays.equals(new int[]{0}, index.find("anc c")));
+        assertTrue(Arrays.equals(new int[]{1}, index.find("malaria ca")));
+
+        // prefix of several words matches only beginning of label
+        assertTrue(Arrays.equals(new int[0], index.find("by dis")));
+        assertTrue(Arrays.equals(new int[0], index.find("verage")));
+        assertEquals(5, index.find("").length);
+    }
+
+    public void testNarrowingAgreesWithFind() {
+        WordPrefixIndex index = new WordPrefixIndex(generateLabels(LABEL_COUNT));
+        String[][] typedTexts = {
+                {"m", "ma", "mal", "malaria", "malaria ", "malaria c", "malaria ca"},
+                {"r", "ra", "rat", "rate"}
+        };
+
+        for (String[] prefixes : typedTexts) {
+            int[] positions = index.find(prefixes[0]);
+            for (String prefix : prefixes) {
+                // extended prefix is matched by narrowing previous result
+                positions = index.narrow(positions, prefix);
+                assertTrue(prefix, Arrays.equals(index.find(prefix), positions));
+            }
+        }
+    }
+
+    /* first keystroke: index lookup against narrowing of all labels */
+    public void testBenchmarkFirstKeystroke() {
+        WordPrefixIndex index = new WordPrefixIndex(generateLabels(LABEL_COUNT));
+        int[] all = index.find("");
+
+        long findTime = 0;
+        long narrowTime = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            String prefix = WORDS[i % WORDS.length].substring(0, 1);
+
+            long start = System.nanoTime();
+            int[] found = index.find(prefix);
+            findTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int[] narrowed = index.narrow(all, prefix);
+            narrowTime += System.nanoTime() - start;
+
+            assertTrue(Arrays.equals(found, narrowed));
+        }
+
+        Log.i(TAG, "First keystroke over " + LABEL_COUNT + " labels: find " +
+                findTime / ITERATIONS / 1000 + " us, narrow " +
+                narrowTime / ITERATIONS / 1000 + " us");
+    }
+
+    private static List<String> generateLabels(int count) {
+        Random random = new Random(42);
+        List<String> labels = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder label = new StringBuilder();
+            int wordCount = 2 + random.nextInt(4);
+            for (int j = 0; j < wordCount; j++) {
+                if (j > 0) {
+                    label.append(' ');
+                }
+                label.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            labels.add(label.toString());
+        }
+        return labels;
+    }
+}
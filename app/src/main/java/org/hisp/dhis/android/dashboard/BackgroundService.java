@@ -24,20 +24,223 @@
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package org.hisp.dhis.android.dashboard;
 
+import android.app.AlarmManager;
+import android.app.PendingIntent;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
 import android.os.IBinder;
 
+import org.hisp.dhis.android.dashboard.job.Job;
+import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.sdk.core.persistence.models.common.meta.ResponseHolder;
+
+import java.util.concurrent.TimeUnit;
+
 /**
+ * Periodically syncs dashboards and interpretations in background, so user
+ * opens application with warm local data. Interval adapts to results:
+ * it is reset to minimum when something has changed on server and grows
+ * while nothing changes. Sync is postponed when device is offline or
+ * battery is low, and is done less often on metered connections.
+ *
  * @author Araz Abishov <araz.abishov.gsoc@gmail.com>.
  */
 public final class BackgroundService extends Service {
+    private static final String PREFERENCES = "preferences:backgroundService";
+    private static final String SYNC_INTERVAL = "key:syncInterval";
+    private static final String NEXT_SYNC_TIME = "key:nextSyncTime";
+
+    private static final long MIN_SYNC_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+    private static final long MAX_SYNC_INTERVAL = TimeUnit.HOURS.toMillis(6);
+    private static final int METERED_INTERVAL_MULTIPLIER = 2;
+    private static final int LOW_BATTERY_PERCENT = 20;
+
+    /* number of syncs started in current run */
+    private static final int SYNC_COUNT = 2;
+
+    private int mFinishedSyncs;
+    private boolean mHasChanges;
+    private boolean mIsRunning;
+
+    /**
+     * Schedules next sync, keeping interval from previous runs. Alarm is
+     * set again on each call, since it is lost on reboot or when process dies
+     * during sync, but for time stored by previous schedule: calling it on each
+     * start of activity (including rotation) does not keep postponing sync.
+     */
+    public static void scheduleIfNeeded(Context context) {
+        long now = System.currentTimeMillis();
+        long nextSyncTime = getPreferences(context).getLong(NEXT_SYNC_TIME, 0);
+
+        // sync time which has passed was missed, the one too far
+        // ahead is left over from clock which was set back
+        if (nextSyncTime <= now || nextSyncTime > now + MAX_SYNC_INTERVAL) {
+            schedule(context, getSyncInterval(context));
+        } else {
+            setAlarm(context, nextSyncTime);
+        }
+    }
+
+    private static void schedule(Context context, long interval) {
+        long nextSyncTime = System.currentTimeMillis() + interval;
+        getPreferences(context).edit().putLong(NEXT_SYNC_TIME, nextSyncTime).apply();
+        setAlarm(context, nextSyncTime);
+    }
+
+    private static void setAlarm(Context context, long time) {
+        PendingIntent pendingIntent = PendingIntent.getService(
+                context, 0, newIntent(context), PendingIntent.FLAG_UPDATE_CURRENT);
+
+        // non-wakeup alarm: device is not woken up only in order to sync
+        AlarmManager alarmManager = (AlarmManager) context
+                .getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.RTC, time, pendingIntent);
+    }
+
+    /* stored sync time is dropped as well, so scheduleIfNeeded() schedules sync anew */
+    private static void cancel(Context context) {
+        getPreferences(context).edit().remove(NEXT_SYNC_TIME).apply();
+
+        PendingIntent pendingIntent = PendingIntent.getService(
+                context, 0, newIntent(context), PendingIntent.FLAG_NO_CREATE);
+        if (pendingIntent != null) {
+            AlarmManager alarmManager = (AlarmManager) context
+                    .getSystemService(Context.ALARM_SERVICE);
+            alarmManager.cancel(pendingIntent);
+            pendingIntent.cancel();
+        }
+    }
+
+    private static Intent newIntent(Context context) {
+        return new Intent(context, BackgroundService.class);
+    }
+
+    /* stored interval is kept within bounds, even if they have changed since */
+    private static long getSyncInterval(Context context) {
+        long interval = getPreferences(context).getLong(SYNC_INTERVAL, MIN_SYNC_INTERVAL);
+        return Math.max(MIN_SYNC_INTERVAL, Math.min(interval, MAX_SYNC_INTERVAL));
+    }
+
+    private static void setSyncInterval(Context context, long interval) {
+        getPreferences(context).edit().putLong(SYNC_INTERVAL, interval).apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        return Service.START_STICKY;
+        if (!Dhis2.isUserLoggedIn()) {
+            // schedule is not renewed until user logs in again
+            cancel(this);
+            stopSelf();
+            return Service.START_NOT_STICKY;
+        }
+
+        if (mIsRunning) {
+            return Service.START_NOT_STICKY;
+        }
+
+        if (!isNetworkAvailable() || isBatteryLow()) {
+            schedule(this, MAX_SYNC_INTERVAL);
+            stopSelf();
+            return Service.START_NOT_STICKY;
+        }
+
+        mIsRunning = true;
+        mFinishedSyncs = 0;
+        mHasChanges = false;
+
+        Job.Callback<ResponseHolder<Boolean>> callback = new Job.Callback<ResponseHolder<Boolean>>() {
+
+            @Override
+            public void onJobFinished(ResponseHolder<Boolean> result) {
+                onSyncFinished(Boolean.TRUE.equals(result.getItem()));
+            }
+
+            @Override
+            public void onJobCancelled() {
+                onSyncFinished(false);
+            }
+        };
+        DhisService.getInstance().refreshDashboards(this, callback);
+        DhisService.getInstance().refreshInterpretations(callback);
+
+        return Service.START_NOT_STICKY;
+    }
+
+    /* called on main thread, also for cancelled syncs */
+    private void onSyncFinished(boolean hasChanges) {
+        if (hasChanges) {
+            mHasChanges = true;
+        }
+
+        if (++mFinishedSyncs < SYNC_COUNT) {
+            return;
+        }
+
+        try {
+            long interval = mHasChanges ? MIN_SYNC_INTERVAL :
+                    Math.min(getSyncInterval(this) * 2, MAX_SYNC_INTERVAL);
+            setSyncInterval(this, interval);
+
+            if (isNetworkMetered()) {
+                interval = Math.min(interval * METERED_INTERVAL_MULTIPLIER, MAX_SYNC_INTERVAL);
+            }
+            schedule(this, interval);
+        } finally {
+            // next alarm must be able to start sync, whatever happened here
+            mIsRunning = false;
+            stopSelf();
+        }
+    }
+
+    private boolean isNetworkAvailable() {
+        NetworkInfo networkInfo = getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    private boolean isNetworkMetered() {
+        NetworkInfo networkInfo = getActiveNetworkInfo();
+        return networkInfo == null ||
+                networkInfo.getType() != ConnectivityManager.TYPE_WIFI;
+    }
+
+    private NetworkInfo getActiveNetworkInfo() {
+        ConnectivityManager connectivityManager = (ConnectivityManager)
+                getSystemService(Context.CONNECTIVITY_SERVICE);
+        return connectivityManager.getActiveNetworkInfo();
+    }
+
+    private boolean isBatteryLow() {
+        // battery status is sticky broadcast, so no receiver is needed
+        Intent batteryStatus = registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus == null) {
+            return false;
+        }
+
+        int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING ||
+                status == BatteryManager.BATTERY_STATUS_FULL;
+
+        int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level < 0 || scale <= 0) {
+            return false;
+        }
+
+        return !isCharging && level * 100 / scale < LOW_BATTERY_PERCENT;
     }
 
     @Override
@@ -27,8 +27,17 @@
 package org.hisp.dhis.android.dashboard;
 
 import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 import android.widget.Toast;
 
+import org.hisp.dhis.android.dashboard.job.JobJournal;
+import org.hisp.dhis.android.dashboard.utils.PicassoProvider;
+import org.hisp.dhis.android.dashboard.utils.ReportTablePreviews;
 import org.hisp.dhis.android.sdk.core.api.Dhis2;
 import org.hisp.dhis.android.sdk.core.network.APIException;
 
@@ -46,6 +55,43 @@ public final class DhisApplication extends Application {
         super.onCreate();
 
         Dhis2.init(getApplicationContext());
+        JobJournal.init(getApplicationContext());
+        SyncWatermarks.init(getApplicationContext());
+        ReportTablePreviews.init(getApplicationContext());
+
+        // pending syncs are flushed in one batch as soon as network is available
+        registerReceiver(new BroadcastReceiver() {
+
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                // connectivity broadcast is sticky and is delivered on registration,
+                // journal is replayed below at startup anyway
+                if (isInitialStickyBroadcast()) {
+                    return;
+                }
+
+                if (isNetworkAvailable()) {
+                    DhisService.getInstance().replayJournal();
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        if (isNetworkAvailable()) {
+            DhisService.getInstance().replayJournal();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        PicassoProvider.onTrimMemory(level);
+    }
+
+    public boolean isNetworkAvailable() {
+        ConnectivityManager connectivityManager = (ConnectivityManager)
+                getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
     }
 
     protected void showMessage(CharSequence message) {
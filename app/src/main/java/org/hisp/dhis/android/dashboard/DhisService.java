@@ -28,25 +28,63 @@
 
 package org.hisp.dhis.android.dashboard;
 
+import android.content.Context;
+import android.util.Log;
+
 import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
 
 import org.hisp.dhis.android.dashboard.job.Job;
 import org.hisp.dhis.android.dashboard.job.JobExecutor;
+import org.hisp.dhis.android.dashboard.job.JobJournal;
 import org.hisp.dhis.android.dashboard.job.NetworkJob;
+import org.hisp.dhis.android.dashboard.ui.adapters.DashboardItemAdapter;
 import org.hisp.dhis.android.dashboard.ui.events.UiEvent;
+import org.hisp.dhis.android.dashboard.utils.ChangeVersions;
+import org.hisp.dhis.android.dashboard.utils.ChartImageCache;
+import org.hisp.dhis.android.dashboard.utils.DashboardSnapshot;
 import org.hisp.dhis.android.dashboard.utils.EventBusProvider;
+import org.hisp.dhis.android.dashboard.utils.PicassoProvider;
+import org.hisp.dhis.android.dashboard.utils.ReportTable;
+import org.hisp.dhis.android.dashboard.utils.ReportTablePreviews;
+import org.hisp.dhis.android.dashboard.utils.SyncTransactions;
 import org.hisp.dhis.android.sdk.core.api.Dhis2;
 import org.hisp.dhis.android.sdk.core.network.APIException;
+import org.hisp.dhis.android.sdk.core.network.RepositoryManager;
 import org.hisp.dhis.android.sdk.core.persistence.models.common.meta.Credentials;
+import org.hisp.dhis.android.sdk.core.persistence.models.common.meta.ResponseHolder;
 import org.hisp.dhis.android.sdk.core.persistence.preferences.ResourceType;
+import org.hisp.dhis.android.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardElement;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardItem;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardItemContent;
 import org.hisp.dhis.android.sdk.models.user.UserAccount;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public final class DhisService {
     public static final int LOG_IN = 1;
     public static final int CONFIRM_USER = 2;
     public static final int LOG_OUT = 3;
     public static final int SYNC_DASHBOARDS = 5;
     public static final int SYNC_INTERPRETATIONS = 6;
+    public static final int SYNC_DASHBOARDS_CONTENT = 7;
+
+    /* content of each dashboard is synced by separate job, with id
+    built from this offset and dashboard id */
+    private static final int SYNC_DASHBOARD_CONTENT_OFFSET = 1 << 20;
+
+    private static final String TAG = DhisService.class.getSimpleName();
+
+    /* set when there are local changes which have to be sent to server */
+    private static final AtomicBoolean mDashboardsChanged = new AtomicBoolean();
+    private static final AtomicBoolean mInterpretationsChanged = new AtomicBoolean();
 
     private static DhisService mService;
 
@@ -64,7 +102,7 @@ public final class DhisService {
 
     public void logInUser(final HttpUrl serverUrl, final Credentials credentials) {
         JobExecutor.enqueueJob(new NetworkJob<UserAccount>(LOG_IN,
-                ResourceType.USERS) {
+                ResourceType.USERS, Job.Priority.HIGH) {
 
             @Override
             public UserAccount execute() throws APIException {
@@ -74,10 +112,16 @@ public final class DhisService {
     }
 
     public void logOutUser() {
-        JobExecutor.enqueueJob(new Job<UiEvent>(LOG_OUT) {
+        JobExecutor.enqueueJob(new Job<UiEvent>(LOG_OUT,
+                Job.Type.DISK, Job.Priority.HIGH) {
             @Override
             public UiEvent inBackground() {
+                // pending changes are gone together with user data
+                JobJournal.getInstance().clear();
+                SyncWatermarks.getInstance().clear();
+                ReportTablePreviews.getInstance().clear();
                 Dhis2.logOut();
+                ChangeVersions.notifyChanged(Dashboard.class);
                 return new UiEvent(UiEvent.UiEventType.USER_LOG_OUT);
             }
 
@@ -90,7 +134,7 @@ public final class DhisService {
 
     public void confirmUser(final Credentials credentials) {
         JobExecutor.enqueueJob(new NetworkJob<UserAccount>(CONFIRM_USER,
-                ResourceType.USERS) {
+                ResourceType.USERS, Job.Priority.HIGH) {
 
             @Override
             public UserAccount execute() throws APIException {
@@ -99,39 +143,397 @@ public final class DhisService {
         });
     }
 
-    public void syncDashboardsAndContent() {
-        JobExecutor.enqueueJob(new NetworkJob<Object>(SYNC_DASHBOARDS,
-                ResourceType.DASHBOARDS) {
+    /**
+     * Syncs dashboards and items first, so tabs can be shown as soon as
+     * possible. After that, content of each dashboard is fetched by separate
+     * job in parallel, bounded by background network worker pool, so foreground
+     * fetches are not held up by it. Content of selected dashboard is fetched
+     * with high priority, before the rest.
+     *
+     * @param selectedDashboardId id of dashboard which is shown to user, or -1.
+     */
+    public void syncDashboardsAndContent(Context context, long selectedDashboardId) {
+        syncDashboardsAndContent(context, selectedDashboardId, null);
+    }
+
+    private void syncDashboardsAndContent(Context context, final long selectedDashboardId,
+                                          final Job.Callback<ResponseHolder<Boolean>> callback) {
+        final Context appContext = context.getApplicationContext();
+        enqueueJournaledJob(newSyncDashboardsJob(), new Job.Callback<ResponseHolder<Boolean>>() {
 
             @Override
-            public Object execute() throws APIException {
-                Dhis2.dashboards().sync();
-                return new Object();
+            public void onJobFinished(ResponseHolder<Boolean> result) {
+                // content stage runs even if dashboards did not change: cached
+                // images are skipped, while previews of tables expire with time
+                if (result.getApiException() == null) {
+                    syncDashboardsContent(appContext, selectedDashboardId);
+                }
+
+                if (callback != null) {
+                    callback.onJobFinished(result);
+                }
+            }
+
+            @Override
+            public void onJobCancelled() {
+                // content is synced together with the next sync of dashboards
+                if (callback != null) {
+                    callback.onJobCancelled();
+                }
             }
         });
     }
 
-    public void syncDashboards() {
-        JobExecutor.enqueueJob(new NetworkJob<Object>(SYNC_DASHBOARDS,
-                ResourceType.DASHBOARDS) {
+    private static void syncDashboardsContent(final Context context, final long selectedDashboardId) {
+        JobExecutor.enqueueJob(new Job<Map<Long, DashboardContent>>(SYNC_DASHBOARDS_CONTENT,
+                Job.Type.DISK, Job.Priority.NORMAL) {
+
+            @Override
+            public Map<Long, DashboardContent> inBackground() {
+                // the same span count is used by dashboard fragments,
+                // so prefetched images are exactly those shown in cards
+                int spanCount = context.getResources().getInteger(R.integer.column_nums);
+                Map<Long, DashboardContent> contents = new LinkedHashMap<>();
+                List<Dashboard> dashboards = Dhis2.dashboards().list();
+                if (dashboards == null) {
+                    return contents;
+                }
+
+                // selected dashboard goes first
+                for (Dashboard dashboard : dashboards) {
+                    if (dashboard.getId() == selectedDashboardId) {
+                        contents.put(dashboard.getId(), getDashboardContent(context, dashboard, spanCount));
+                    }
+                }
+
+                for (Dashboard dashboard : dashboards) {
+                    if (dashboard.getId() != selectedDashboardId) {
+                        contents.put(dashboard.getId(), getDashboardContent(context, dashboard, spanCount));
+                    }
+                }
+                return contents;
+            }
 
             @Override
-            public Object execute() throws APIException {
-                Dhis2.dashboards().sync();
-                return new Object();
+            public void onFinish(Map<Long, DashboardContent> contents) {
+                for (Map.Entry<Long, DashboardContent> entry : contents.entrySet()) {
+                    Job.Priority priority = entry.getKey() == selectedDashboardId ?
+                            Job.Priority.HIGH : Job.Priority.LOW;
+                    JobExecutor.enqueueJob(newSyncDashboardContentJob(
+                            context, entry.getKey(), entry.getValue(), priority));
+                }
             }
         });
     }
 
+    private static Job<Boolean> newSyncDashboardContentJob(final Context context, long dashboardId,
+                                                           final DashboardContent content,
+                                                           Job.Priority priority) {
+        int jobId = SYNC_DASHBOARD_CONTENT_OFFSET + (int) (dashboardId % SYNC_DASHBOARD_CONTENT_OFFSET);
+        return new Job<Boolean>(jobId, Job.Type.NETWORK, priority) {
+
+            @Override
+            public Boolean inBackground() {
+                // images are only written to disk, they are decoded when shown
+                ChartImageCache imageCache = PicassoProvider.getChartImageCache(context);
+                for (String url : content.imageUrls) {
+                    if (isCancelled()) {
+                        return false;
+                    }
+
+                    try {
+                        imageCache.prefetch(url);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Failed to fetch dashboard content: " + url, e);
+                    }
+                }
+
+                boolean isPreviewFetched = false;
+                for (DashboardElement reportTable : content.reportTables) {
+                    if (isCancelled()) {
+                        break;
+                    }
+
+                    isPreviewFetched |= fetchReportTablePreview(reportTable);
+                }
+                return isPreviewFetched;
+            }
+
+            @Override
+            public void onFinish(Boolean isPreviewFetched) {
+                if (Boolean.TRUE.equals(isPreviewFetched)) {
+                    EventBusProvider.post(new UiEvent(UiEvent.UiEventType.REPORT_TABLE_PREVIEWS_UPDATED));
+                }
+            }
+        };
+    }
+
+    /* reads only top left corner of table, the rest is not even downloaded */
+    private static boolean fetchReportTablePreview(DashboardElement reportTable) {
+        String url = ReportTable.buildUrl(reportTable.getUId(), "json");
+        try {
+            Response response = RepositoryManager.provideOkHttpClient()
+                    .newCall(new Request.Builder().url(url).build())
+                    .execute();
+            try {
+                if (!response.isSuccessful()) {
+                    Log.w(TAG, "Failed to fetch report table preview, response code: " + response.code());
+                    return false;
+                }
+
+                ReportTable preview = ReportTable.fromJson(response.body().byteStream(),
+                        ReportTablePreviews.MAX_ROWS, ReportTablePreviews.MAX_COLUMNS);
+                ReportTablePreviews.getInstance().put(reportTable.getUId(),
+                        reportTable.getLastUpdated(), preview);
+                return true;
+            } finally {
+                response.body().close();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // JsonReader reports unexpected structure with IllegalStateException
+            Log.w(TAG, "Failed to fetch report table preview: " + url, e);
+            return false;
+        }
+    }
+
+    private static DashboardContent getDashboardContent(Context context, Dashboard dashboard, int spanCount) {
+        List<DashboardItem> dashboardItems = Dhis2.dashboardItems().list(dashboard);
+        List<DashboardElement> reportTables = new ArrayList<>();
+        if (dashboardItems != null) {
+            // data of table changes without changing its lastUpdated,
+            // so previews are refreshed once they are older than max age
+            ReportTablePreviews previews = ReportTablePreviews.getInstance();
+            for (DashboardItem item : dashboardItems) {
+                DashboardElement reportTable = item.getReportTable();
+                if (DashboardItemContent.TYPE_REPORT_TABLE.equals(item.getType()) && reportTable != null &&
+                        !previews.isFresh(reportTable.getUId(), reportTable.getLastUpdated())) {
+                    reportTables.add(reportTable);
+                }
+            }
+        }
+
+        return new DashboardContent(DashboardItemAdapter
+                .getImageUrls(context, dashboardItems, spanCount), reportTables);
+    }
+
+    /* content of dashboard which is fetched ahead of time */
+    private static class DashboardContent {
+        final List<String> imageUrls;
+
+        /* report tables, previews of which are refreshed */
+        final List<DashboardElement> reportTables;
+
+        DashboardContent(List<String> imageUrls, List<DashboardElement> reportTables) {
+            this.imageUrls = imageUrls;
+            this.reportTables = reportTables;
+        }
+    }
+
+    /* should be called after dashboards were changed locally */
+    public void syncDashboards() {
+        syncDashboards(null);
+    }
+
+    /* callback is attached to sync which is already in flight, if any */
+    public void syncDashboards(Job.Callback<ResponseHolder<Boolean>> callback) {
+        mDashboardsChanged.set(true);
+        enqueueJournaledJob(newSyncDashboardsJob(), callback);
+    }
+
+    /* should be called after interpretations were changed locally */
     public void syncInterpretations() {
-        JobExecutor.enqueueJob(new NetworkJob<Object>(SYNC_INTERPRETATIONS,
-                ResourceType.INTERPRETATIONS) {
+        syncInterpretations(null);
+    }
+
+    /* callback is attached to sync which is already in flight, if any */
+    public void syncInterpretations(Job.Callback<ResponseHolder<Boolean>> callback) {
+        mInterpretationsChanged.set(true);
+        enqueueJournaledJob(newSyncInterpretationsJob(), callback);
+    }
+
+    /* syncs dashboards only if they were changed on server since last sync,
+    and refreshes their content which is out of date in any case */
+    public void refreshDashboards(Context context, Job.Callback<ResponseHolder<Boolean>> callback) {
+        syncDashboardsAndContent(context, -1, callback);
+    }
+
+    /* syncs interpretations only if they were changed on server since last sync */
+    public void refreshInterpretations() {
+        refreshInterpretations(null);
+    }
+
+    public void refreshInterpretations(Job.Callback<ResponseHolder<Boolean>> callback) {
+        enqueueJournaledJob(newSyncInterpretationsJob(), callback);
+    }
+
+    /**
+     * Enqueues all syncs which were requested, but did not complete
+     * successfully before process was killed or network was lost.
+     */
+    public void replayJournal() {
+        if (!Dhis2.isUserLoggedIn()) {
+            return;
+        }
+
+        for (int jobId : JobJournal.getInstance().getPendingJobIds()) {
+            switch (jobId) {
+                case SYNC_DASHBOARDS: {
+                    syncDashboards();
+                    break;
+                }
+                case SYNC_INTERPRETATIONS: {
+                    syncInterpretations();
+                    break;
+                }
+                default: {
+                    // job is not known anymore
+                    JobJournal.getInstance().complete(jobId);
+                }
+            }
+        }
+    }
+
+    /* sync stays in journal until it succeeds */
+    private static void enqueueJournaledJob(final DeltaSyncJob job,
+                                            Job.Callback<ResponseHolder<Boolean>> callback) {
+        final int jobId = job.getJobId();
+        JobJournal.getInstance().append(jobId);
+
+        job.addCallback(new Job.Callback<ResponseHolder<Boolean>>() {
+
             @Override
-            public Object execute() throws APIException {
-                Dhis2.interpretations().sync();
-                return new Object();
+            public void onJobFinished(ResponseHolder<Boolean> result) {
+                if (result.getApiException() != null) {
+                    return;
+                }
+
+                // local change could have been coalesced onto this sync after it had
+                // read local state, so change is not uploaded yet and needs another sync
+                if (job.hasLocalChanges()) {
+                    enqueueJournaledJob(newSyncJob(jobId), null);
+                } else {
+                    JobJournal.getInstance().complete(jobId);
+                }
+            }
+
+            @Override
+            public void onJobCancelled() {
+                // sync stays in journal and is replayed later
             }
         });
+        if (callback != null) {
+            job.addCallback(callback);
+        }
+
+        JobExecutor.enqueueJob(job);
+    }
+
+    private static DeltaSyncJob newSyncJob(int jobId) {
+        switch (jobId) {
+            case SYNC_DASHBOARDS:
+                return newSyncDashboardsJob();
+            case SYNC_INTERPRETATIONS:
+                return newSyncInterpretationsJob();
+            default:
+                throw new IllegalArgumentException("Unknown sync job: " + jobId);
+        }
+    }
+
+    private static DeltaSyncJob newSyncDashboardsJob() {
+        return new DeltaSyncJob(SYNC_DASHBOARDS, ResourceType.DASHBOARDS,
+                "dashboards", mDashboardsChanged) {
+
+            @Override
+            void sync() throws APIException {
+                DashboardSnapshot snapshot = DashboardSnapshot.take();
+                boolean isSynced = false;
+                try {
+                    Dhis2.dashboards().sync();
+                    isSynced = true;
+                } finally {
+                    // sync which has failed half way could have changed any dashboard
+                    if (isSynced) {
+                        for (long dashboardId : snapshot.getChangedDashboards(DashboardSnapshot.take())) {
+                            ChangeVersions.notifyChanged(Dashboard.class, dashboardId);
+                        }
+                    } else {
+                        ChangeVersions.notifyChanged(Dashboard.class);
+                    }
+                }
+            }
+        };
+    }
+
+    private static DeltaSyncJob newSyncInterpretationsJob() {
+        return new DeltaSyncJob(SYNC_INTERPRETATIONS, ResourceType.INTERPRETATIONS,
+                "interpretations", mInterpretationsChanged) {
+
+            @Override
+            void sync() throws APIException {
+                Dhis2.interpretations().sync();
+            }
+        };
+    }
+
+    /**
+     * Runs full sync only if there are local changes, or if resource watermark
+     * on server has changed since last successful sync. Merging of created,
+     * updated and deleted objects is done by full sync. Result tells
+     * if full sync was performed.
+     */
+    private static abstract class DeltaSyncJob extends NetworkJob<Boolean> {
+        final ResourceType mResourceType;
+        final String mResource;
+        final AtomicBoolean mLocalChanges;
+
+        DeltaSyncJob(int jobId, ResourceType resourceType,
+                     String resource, AtomicBoolean localChanges) {
+            super(jobId, resourceType, Job.Priority.LOW);
+
+            mResourceType = resourceType;
+            mResource = resource;
+            mLocalChanges = localChanges;
+        }
+
+        @Override
+        public final Boolean execute() throws APIException {
+            boolean hasLocalChanges = mLocalChanges.getAndSet(false);
+
+            // watermark is taken before sync, so changes
+            // made on server during sync are not missed
+            SyncWatermarks watermarks = SyncWatermarks.getInstance();
+            String watermark = watermarks.fetchWatermark(mResource);
+
+            if (!hasLocalChanges && !watermarks.isChanged(mResourceType, watermark) &&
+                    !mLocalChanges.get()) {
+                return false;
+            }
+
+            // loaders reload once when sync has ended, not on each written row
+            SyncTransactions.begin();
+            try {
+                sync();
+            } catch (APIException exception) {
+                if (hasLocalChanges) {
+                    mLocalChanges.set(true);
+                }
+                throw exception;
+            } finally {
+                SyncTransactions.end();
+            }
+
+            if (watermark != null) {
+                watermarks.setWatermark(mResourceType, watermark);
+            }
+            return true;
+        }
+
+        /* true if there are local changes which were not picked up by sync yet */
+        final boolean hasLocalChanges() {
+            return mLocalChanges.get();
+        }
+
+        abstract void sync() throws APIException;
     }
 
     public boolean isJobRunning(int jobId) {
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.sdk.core.network.RepositoryManager;
+import org.hisp.dhis.android.sdk.core.persistence.preferences.ResourceType;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
+
+/**
+ * Keeps lastUpdated watermark for each synced resource type. Watermark is
+ * a digest of ids and lastUpdated values of all objects on server, which
+ * is fetched by lightweight request (two fields per object). If digest did
+ * not change since last successful sync, nothing was created, updated or
+ * deleted on server and full sync can be skipped.
+ */
+final class SyncWatermarks {
+    private static final String TAG = SyncWatermarks.class.getSimpleName();
+    private static final String PREFERENCES = "preferences:syncWatermarks";
+
+    private static SyncWatermarks mWatermarks;
+
+    private final SharedPreferences mPreferences;
+
+    private SyncWatermarks(Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    static synchronized void init(Context context) {
+        isNull(context, "Context must not be null");
+
+        if (mWatermarks == null) {
+            mWatermarks = new SyncWatermarks(context.getApplicationContext());
+        }
+    }
+
+    static synchronized SyncWatermarks getInstance() {
+        if (mWatermarks == null) {
+            throw new IllegalStateException("SyncWatermarks must be initialized first");
+        }
+
+        return mWatermarks;
+    }
+
+    /**
+     * Fetches current watermark of resource from server.
+     *
+     * @param resource API resource name, for example "dashboards".
+     * @return watermark or null, if it cannot be fetched.
+     */
+    String fetchWatermark(String resource) {
+        String url = Dhis2.getServerUrl().newBuilder()
+                .addPathSegment("api").addPathSegment(resource)
+                .addQueryParameter("fields", "id,lastUpdated")
+                .addQueryParameter("paging", "false")
+                .toString();
+
+        try {
+            Response response = RepositoryManager.provideOkHttpClient()
+                    .newCall(new Request.Builder().url(url).build())
+                    .execute();
+            if (!response.isSuccessful()) {
+                response.body().close();
+                return null;
+            }
+
+            JSONArray objects = new JSONObject(response.body().string())
+                    .optJSONArray(resource);
+            if (objects == null) {
+                return null;
+            }
+
+            List<String> entries = new ArrayList<>(objects.length());
+            for (int i = 0; i < objects.length(); i++) {
+                JSONObject object = objects.getJSONObject(i);
+                entries.add(object.optString("id") + '@' + object.optString("lastUpdated"));
+            }
+
+            // server does not guarantee any ordering
+            Collections.sort(entries);
+            return digest(entries);
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to fetch watermark for " + resource, e);
+            return null;
+        }
+    }
+
+    boolean isChanged(ResourceType resourceType, String watermark) {
+        return watermark == null ||
+                !watermark.equals(mPreferences.getString(resourceType.name(), null));
+    }
+
+    void setWatermark(ResourceType resourceType, String watermark) {
+        mPreferences.edit().putString(resourceType.name(), watermark).apply();
+    }
+
+    void clear() {
+        mPreferences.edit().clear().apply();
+    }
+
+    private static String digest(List<String> entries) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+            for (String entry : entries) {
+                messageDigest.update(entry.getBytes("UTF-8"));
+                messageDigest.update((byte) '\n');
+            }
+
+            StringBuilder builder = new StringBuilder();
+            for (byte b : messageDigest.digest()) {
+                builder.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -30,14 +30,122 @@ package org.hisp.dhis.android.dashboard.job;
 
 import android.os.AsyncTask;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
 
 public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T> {
     private final int mJobId;
-    private JobExecutor mJobExecutor;
+    private final Type mType;
+    private final Priority mPriority;
+
+    /* guarded by itself, together with mFinished flag */
+    private final List<Callback<T>> mCallbacks;
+    private boolean mFinished;
+
+    /* true while job occupies one of JobExecutor running slots */
+    private final AtomicBoolean mHoldsSlot;
+    private long mTimeout;
+
+    /* used by JobMetrics, in nanoseconds */
+    private volatile long mEnqueueTime;
+    private volatile long mStartTime;
+    private volatile boolean mSucceeded;
+
+    private volatile JobExecutor mJobExecutor;
 
     public Job(int jobId) {
+        this(jobId, Type.CPU, Priority.NORMAL);
+    }
+
+    public Job(int jobId, Type type, Priority priority) {
         mJobId = isNull(jobId, "Job ID must not be null");
+        mType = isNull(type, "Job type must not be null");
+        mPriority = isNull(priority, "Job priority must not be null");
+        mCallbacks = new ArrayList<>();
+        mHoldsSlot = new AtomicBoolean();
+    }
+
+    /**
+     * Sets deadline for job, counted from the moment it is started.
+     * Job which runs longer is cancelled by JobExecutor.
+     * Should be called before job is enqueued.
+     */
+    public final void setTimeout(long duration, TimeUnit unit) {
+        mTimeout = unit.toMillis(duration);
+    }
+
+    public final long getTimeout() {
+        return mTimeout;
+    }
+
+    final void setEnqueueTime(long enqueueTime) {
+        mEnqueueTime = enqueueTime;
+    }
+
+    final long getEnqueueTime() {
+        return mEnqueueTime;
+    }
+
+    final void setStartTime(long startTime) {
+        mStartTime = startTime;
+    }
+
+    final long getStartTime() {
+        return mStartTime;
+    }
+
+    final boolean isSucceeded() {
+        return mSucceeded;
+    }
+
+    final void acquireSlot() {
+        mHoldsSlot.set(true);
+    }
+
+    /* returns true only for the first call after acquireSlot() */
+    final boolean releaseSlot() {
+        return mHoldsSlot.compareAndSet(true, false);
+    }
+
+    /**
+     * Registers callback which will receive result of this job. If job with
+     * the same id is already enqueued, callback is attached to that job instead
+     * and receives its result. Should be called before job is enqueued.
+     */
+    public final void addCallback(Callback<T> callback) {
+        isNull(callback, "Callback must not be null");
+
+        synchronized (mCallbacks) {
+            mCallbacks.add(callback);
+        }
+    }
+
+    /**
+     * Moves callbacks of given job to this one, so they receive the result
+     * of this job. Jobs which share id are expected to produce the same result.
+     *
+     * @return false if this job has already delivered its result or was cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    final boolean coalesce(Job<?> job) {
+        List<Callback<T>> callbacks;
+        synchronized (job.mCallbacks) {
+            callbacks = new ArrayList<>((List<Callback<T>>) (List<?>) job.mCallbacks);
+        }
+
+        synchronized (mCallbacks) {
+            // cancelled job would never deliver result to new callers
+            if (mFinished || isCancelled()) {
+                return false;
+            }
+
+            mCallbacks.addAll(callbacks);
+            return true;
+        }
     }
 
     public final void onBind(JobExecutor executor) {
@@ -61,7 +169,20 @@ public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T>
 
     @Override
     public final void onPostExecute(T result) {
+        mSucceeded = isSuccessful(result);
         onFinish(result);
+
+        List<Callback<T>> callbacks;
+        synchronized (mCallbacks) {
+            mFinished = true;
+            callbacks = new ArrayList<>(mCallbacks);
+        }
+
+        // all coalesced callers share the same result
+        for (Callback<T> callback : callbacks) {
+            callback.onJobFinished(result);
+        }
+
         // passing command to job executor
         // that we have finished work
         mJobExecutor.onFinishJob(this);
@@ -72,6 +193,53 @@ public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T>
         // overriding method here just for convenience
     }
 
+    /* tells JobMetrics if job has failed */
+    protected boolean isSuccessful(T result) {
+        return true;
+    }
+
+    /**
+     * Tells all callbacks, including those of coalesced callers, that job was
+     * cancelled and no result will come. Called on main thread; only the first
+     * call has effect, so callbacks are notified exactly once.
+     */
+    final void notifyCancelled() {
+        List<Callback<T>> callbacks;
+        synchronized (mCallbacks) {
+            if (mFinished) {
+                return;
+            }
+
+            mFinished = true;
+            callbacks = new ArrayList<>(mCallbacks);
+        }
+
+        for (Callback<T> callback : callbacks) {
+            callback.onJobCancelled();
+        }
+    }
+
+    @Override
+    public final void onCancelled(T result) {
+        // job could have been cancelled after it had finished work in background
+        notifyCancelled();
+
+        // job could have already been released by JobExecutor.cancel()
+        JobExecutor executor = mJobExecutor;
+        if (executor != null) {
+            executor.onFinishJob(this);
+        }
+    }
+
+    /**
+     * Called by JobExecutor on the thread which cancels job, right after it was
+     * marked cancelled. Worker thread is interrupted, but blocking network calls
+     * ignore interruption, so jobs which own such a call should abort it here.
+     */
+    protected void onCancel() {
+        // overriding method here just for convenience
+    }
+
     public final void onUnbind() {
         mJobExecutor = null;
     }
@@ -79,4 +247,46 @@ public abstract class Job<T> extends AsyncTask<Void, Void, T> implements IJob<T>
     public final int getJobId() {
         return mJobId;
     }
+
+    /**
+     * Returns id under which JobMetrics records this job. Jobs which get
+     * new id for each instance should override it with one shared id, so
+     * that statistics do not grow with every instance.
+     */
+    public int getMetricsId() {
+        return mJobId;
+    }
+
+    public final Type getType() {
+        return mType;
+    }
+
+    public final Priority getPriority() {
+        return mPriority;
+    }
+
+    public interface Callback<T> {
+        void onJobFinished(T result);
+
+        /* called instead of onJobFinished() when job was cancelled */
+        void onJobCancelled();
+    }
+
+    /**
+     * Kind of resource job is bound by. Each type
+     * is executed within its own bounded worker pool.
+     */
+    public enum Type {
+        NETWORK, DISK, CPU
+    }
+
+    /**
+     * Jobs with higher priority are taken from worker pool queue first.
+     * Declaration order matters: HIGH is reserved for jobs user is waiting
+     * for (foreground fetches), LOW for background synchronization. Network
+     * jobs with LOW priority run within separate worker pool.
+     */
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
 }
\ No newline at end of file
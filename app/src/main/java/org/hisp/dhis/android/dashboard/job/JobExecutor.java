@@ -28,83 +28,233 @@
 
 package org.hisp.dhis.android.dashboard.job;
 
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
 
+/**
+ * All bookkeeping is done with concurrent structures, so jobs can be
+ * enqueued and checked from any thread. Jobs themselves are always
+ * started on main thread, since AsyncTask calls onPreExecute()
+ * on the thread which started it.
+ */
 public final class JobExecutor {
     private static final String TAG = JobExecutor.class.getSimpleName();
     private static final int MAX_RUNNING_JOBS = 64;
 
-    private static JobExecutor mJobExecutor;
+    /* worker counts for each job type */
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int NETWORK_WORKERS = 3;
+    private static final int BACKGROUND_NETWORK_WORKERS = 2;
+    private static final int DISK_WORKERS = 1;
+    private static final int CPU_WORKERS = Math.max(1, CPU_COUNT - 1);
+
+    private static final JobExecutor mJobExecutor = new JobExecutor();
+
+    private final JobWorkerPool mNetworkPool;
+    private final JobWorkerPool mBackgroundNetworkPool;
+    private final JobWorkerPool mDiskPool;
+    private final JobWorkerPool mCpuPool;
+    private final Handler mMainHandler;
 
-    private Queue<Job> mPendingJobs;
-    private Queue<Job> mRunningJobs;
-    private Map<Integer, Job> mPendingJobIds;
-    private Map<Integer, Job> mRunningJobIds;
+    /* ids of both pending and running jobs */
+    private final ConcurrentMap<Integer, Job> mEnqueuedJobs;
+    private final Queue<Job> mPendingJobs;
+    private final AtomicInteger mRunningJobsCount;
 
     private JobExecutor() {
-        mPendingJobs = new LinkedList<>();
-        mRunningJobs = new LinkedList<>();
+        mEnqueuedJobs = new ConcurrentHashMap<>();
+        mPendingJobs = new ConcurrentLinkedQueue<>();
+        mRunningJobsCount = new AtomicInteger();
 
-        mPendingJobIds = new HashMap<>();
-        mRunningJobIds = new HashMap<>();
+        mNetworkPool = new JobWorkerPool("JobExecutor network", NETWORK_WORKERS);
+        mBackgroundNetworkPool = new JobWorkerPool("JobExecutor background network",
+                BACKGROUND_NETWORK_WORKERS);
+        mDiskPool = new JobWorkerPool("JobExecutor disk", DISK_WORKERS);
+        mCpuPool = new JobWorkerPool("JobExecutor cpu", CPU_WORKERS);
+        mMainHandler = new Handler(Looper.getMainLooper());
     }
 
     private static JobExecutor getInstance() {
-        if (mJobExecutor == null) {
-            mJobExecutor = new JobExecutor();
-        }
-
         return mJobExecutor;
     }
 
-    private static <T> void run(AsyncTask<Void, Void, T> task) {
-        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    /* executor which runs small disk writes on the disk worker pool */
+    static Executor getDiskExecutor() {
+        return getInstance().mDiskPool.getExecutor(Job.Priority.HIGH);
+    }
+
+    private <T> void run(Job<T> job) {
+        job.executeOnExecutor(getWorkerPool(job.getType(), job.getPriority())
+                .getExecutor(job.getPriority()));
+    }
+
+    /* running job is never preempted, so background network jobs get
+    their own workers and cannot hold up those user is waiting for */
+    private JobWorkerPool getWorkerPool(Job.Type type, Job.Priority priority) {
+        switch (type) {
+            case NETWORK:
+                return priority == Job.Priority.LOW ? mBackgroundNetworkPool : mNetworkPool;
+            case DISK:
+                return mDiskPool;
+            default:
+                return mCpuPool;
+        }
     }
 
     public static <T> void enqueueJob(Job<T> job) {
         isNull(job, "Job object must not be null");
 
         JobExecutor executor = getInstance();
-        if (!executor.isJobEnqueued(job.getJobId())) {
-            executor.enqueuePendingJob(job);
+        if (executor.enqueuePendingJob(job)) {
             executor.executeNextJob();
         }
     }
 
+    /**
+     * Enqueues job and registers callback for its result. If job with the same
+     * id is already pending or running, no new job is started: callback
+     * is attached to the one in flight and gets its result.
+     */
+    public static <T> void enqueueJob(Job<T> job, Job.Callback<T> callback) {
+        isNull(job, "Job object must not be null");
+
+        job.addCallback(callback);
+        enqueueJob(job);
+    }
+
     public static boolean isJobRunning(int jobId) {
         JobExecutor executor = getInstance();
         return executor.isJobEnqueued(jobId);
     }
 
+    /**
+     * Cancels pending or running job with given id. Running job is interrupted
+     * and its slot is given to the next pending job right away, without
+     * waiting for the worker to return. Slot is released on main thread, so when
+     * called from another thread, it happens with the next main loop message. Instead of result, all callbacks of cancelled
+     * job, including those of coalesced callers, get onJobCancelled() on main thread.
+     *
+     * @return false if there was no job with given id.
+     */
+    public static boolean cancel(int jobId) {
+        JobExecutor executor = getInstance();
+        Job job = executor.mEnqueuedJobs.get(jobId);
+        return job != null && executor.cancelJob(job);
+    }
+
     private void executeNextJob() {
-        if (mRunningJobIds.size() < MAX_RUNNING_JOBS &&
-                mPendingJobs.size() > 0) {
-            Job job = mPendingJobs.peek();
-            dequeuePendingJob(job);
-            onStartJob(job);
+        while (true) {
+            int runningJobs = mRunningJobsCount.get();
+            if (runningJobs >= MAX_RUNNING_JOBS) {
+                return;
+            }
+
+            // reserving slot before taking job out of queue
+            if (!mRunningJobsCount.compareAndSet(runningJobs, runningJobs + 1)) {
+                continue;
+            }
+
+            Job job = mPendingJobs.poll();
+            if (job == null) {
+                mRunningJobsCount.decrementAndGet();
+
+                // some other thread could have enqueued a job after we
+                // have polled, but before we have released the slot
+                if (mPendingJobs.isEmpty()) {
+                    return;
+                }
+            } else if (job.isCancelled()) {
+                // cancelled jobs are left in queue and skipped here
+                mRunningJobsCount.decrementAndGet();
+                JobMetrics.onJobFinished(job);
+            } else {
+                job.acquireSlot();
+                onStartJob(job);
+            }
         }
     }
 
-    <T> void onStartJob(Job<T> job) {
-        bindJob(job);
-        run(job);
+    <T> void onStartJob(final Job<T> job) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            if (job.isCancelled()) {
+                // job was cancelled before it reached main thread
+                onFinishJob(job);
+                return;
+            }
+
+            bindJob(job);
+            JobMetrics.onJobStarted(job);
+            run(job);
+
+            if (job.getTimeout() > 0) {
+                mMainHandler.postAtTime(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        cancelJob(job);
+                    }
+                }, job, SystemClock.uptimeMillis() + job.getTimeout());
+            }
+        } else {
+            mMainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    onStartJob(job);
+                }
+            });
+        }
     }
 
     void onFinishJob(Job job) {
+        mMainHandler.removeCallbacksAndMessages(job);
         unbindJob(job);
         executeNextJob();
     }
 
+    /* marks job as cancelled on calling thread, while slot bookkeeping
+    is done on main thread, after pending onStartJob() of the same job */
+    private boolean cancelJob(final Job job) {
+        if (!job.cancel(true)) {
+            return false;
+        }
+
+        // pending job will be skipped once polled, running
+        // one will not call onFinishJob() second time
+        mEnqueuedJobs.remove(job.getJobId(), job);
+        job.onCancel();
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            onCancelJob(job);
+        } else {
+            mMainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+                    onCancelJob(job);
+                }
+            });
+        }
+        return true;
+    }
+
+    private void onCancelJob(Job job) {
+        onFinishJob(job);
+        job.notifyCancelled();
+    }
+
     <T> void bindJob(Job<T> job) {
         job.onBind(this);
-        enqueueRunningJob(job);
     }
 
     <T> void unbindJob(Job<T> job) {
@@ -112,28 +262,40 @@ public final class JobExecutor {
         dequeueRunningJob(job);
     }
 
-    private void enqueuePendingJob(Job job) {
-        mPendingJobIds.put(job.getJobId(), job);
-        mPendingJobs.add(job);
-    }
+    /* returns false if job with the same id is already pending or
+    running. In this case callbacks of job are moved to the one in flight */
+    private boolean enqueuePendingJob(Job job) {
+        while (true) {
+            Job enqueuedJob = mEnqueuedJobs.putIfAbsent(job.getJobId(), job);
+            if (enqueuedJob == null) {
+                JobMetrics.onJobEnqueued(job);
+                mPendingJobs.offer(job);
+                return true;
+            }
 
-    private void dequeuePendingJob(Job job) {
-        mPendingJobIds.remove(job.getJobId());
-        mPendingJobs.remove(job);
-    }
+            if (enqueuedJob.coalesce(job)) {
+                return false;
+            }
 
-    private void enqueueRunningJob(Job job) {
-        mRunningJobIds.put(job.getJobId(), job);
-        mRunningJobs.add(job);
+            // job in flight has already delivered its result,
+            // but was not removed yet. Taking its place.
+            if (mEnqueuedJobs.replace(job.getJobId(), enqueuedJob, job)) {
+                JobMetrics.onJobEnqueued(job);
+                mPendingJobs.offer(job);
+                return true;
+            }
+        }
     }
 
     private void dequeueRunningJob(Job job) {
-        mRunningJobIds.remove(job.getJobId());
-        mRunningJobs.remove(job);
+        mEnqueuedJobs.remove(job.getJobId(), job);
+        if (job.releaseSlot()) {
+            mRunningJobsCount.decrementAndGet();
+            JobMetrics.onJobFinished(job);
+        }
     }
 
     private boolean isJobEnqueued(int jobId) {
-        return mPendingJobIds.get(jobId) != null ||
-                mRunningJobIds.get(jobId) != null;
+        return mEnqueuedJobs.containsKey(jobId);
     }
-}
\ No newline at end of file
+}
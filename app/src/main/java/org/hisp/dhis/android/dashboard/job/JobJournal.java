@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.job;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
+
+/**
+ * Append-only journal of jobs which must survive process death. Each job id
+ * is written when job is enqueued and once again when it is completed;
+ * jobs without completion record are pending and should be replayed
+ * after restart. File is truncated as soon as there are no pending jobs left.
+ * Pending ids are updated in memory right away, while records are written
+ * and synced to disk on the disk worker pool, so callers on main thread
+ * never wait for disk.
+ */
+public final class JobJournal {
+    private static final String TAG = JobJournal.class.getSimpleName();
+    private static final String JOURNAL_FILE = "job_journal";
+
+    /* record types */
+    private static final byte RECORD_ENQUEUED = 1;
+    private static final byte RECORD_COMPLETED = 2;
+
+    /* not written to file, tells writer to delete it */
+    private static final byte RECORD_TRUNCATE = 3;
+
+    private static JobJournal mJournal;
+
+    private final File mFile;
+    private final Executor mExecutor;
+    private final Runnable mWriter;
+
+    /* guarded by this */
+    private final Set<Integer> mPendingJobIds;
+
+    /* records which are not written yet, guarded by this */
+    private final List<Record> mUnwrittenRecords;
+    private boolean mIsWriting;
+
+    private JobJournal(Context context) {
+        mFile = new File(context.getFilesDir(), JOURNAL_FILE);
+        mPendingJobIds = new LinkedHashSet<>(read(mFile));
+        mUnwrittenRecords = new ArrayList<>();
+        mExecutor = JobExecutor.getDiskExecutor();
+        mWriter = new Runnable() {
+
+            @Override
+            public void run() {
+                writeRecords();
+            }
+        };
+    }
+
+    public static synchronized void init(Context context) {
+        isNull(context, "Context must not be null");
+
+        if (mJournal == null) {
+            mJournal = new JobJournal(context.getApplicationContext());
+        }
+    }
+
+    public static synchronized JobJournal getInstance() {
+        if (mJournal == null) {
+            throw new IllegalStateException("JobJournal must be initialized first");
+        }
+
+        return mJournal;
+    }
+
+    public synchronized void append(int jobId) {
+        if (mPendingJobIds.add(jobId)) {
+            enqueueRecord(RECORD_ENQUEUED, jobId);
+        }
+    }
+
+    public synchronized void complete(int jobId) {
+        if (!mPendingJobIds.remove(jobId)) {
+            return;
+        }
+
+        if (mPendingJobIds.isEmpty()) {
+            clear();
+        } else {
+            enqueueRecord(RECORD_COMPLETED, jobId);
+        }
+    }
+
+    /* returns ids of jobs which were enqueued, but not completed */
+    public synchronized List<Integer> getPendingJobIds() {
+        return new ArrayList<>(mPendingJobIds);
+    }
+
+    public synchronized void clear() {
+        mPendingJobIds.clear();
+
+        // records which were not written yet are useless
+        mUnwrittenRecords.clear();
+        enqueueRecord(RECORD_TRUNCATE, 0);
+    }
+
+    /* should be called while holding lock */
+    private void enqueueRecord(byte recordType, int jobId) {
+        mUnwrittenRecords.add(new Record(recordType, jobId));
+
+        // only one writer at a time, so records hit the file in order
+        if (!mIsWriting) {
+            mIsWriting = true;
+            mExecutor.execute(mWriter);
+        }
+    }
+
+    /* runs on disk worker, writes records in batches until there are none left */
+    private void writeRecords() {
+        while (true) {
+            List<Record> records;
+            synchronized (this) {
+                if (mUnwrittenRecords.isEmpty()) {
+                    mIsWriting = false;
+                    return;
+                }
+
+                records = new ArrayList<>(mUnwrittenRecords);
+                mUnwrittenRecords.clear();
+            }
+
+            int start = 0;
+            for (int i = 0; i < records.size(); i++) {
+                if (records.get(i).mType == RECORD_TRUNCATE) {
+                    // nothing written before truncation matters
+                    start = i + 1;
+                }
+            }
+
+            if (start > 0 && mFile.exists() && !mFile.delete()) {
+                Log.w(TAG, "Failed to truncate job journal");
+            }
+
+            if (start < records.size()) {
+                write(records.subList(start, records.size()));
+            }
+        }
+    }
+
+    private void write(List<Record> records) {
+        try {
+            FileOutputStream fileStream = new FileOutputStream(mFile, true);
+            try {
+                DataOutputStream outputStream = new DataOutputStream(fileStream);
+                for (Record record : records) {
+                    outputStream.writeByte(record.mType);
+                    outputStream.writeInt(record.mJobId);
+                }
+                outputStream.flush();
+
+                // records have to hit the disk before process can be killed
+                fileStream.getFD().sync();
+            } finally {
+                fileStream.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write job journal records", e);
+        }
+    }
+
+    private static Set<Integer> read(File file) {
+        Set<Integer> pendingJobIds = new LinkedHashSet<>();
+        try {
+            DataInputStream inputStream = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                while (true) {
+                    byte recordType = inputStream.readByte();
+                    int jobId = inputStream.readInt();
+
+                    if (recordType == RECORD_ENQUEUED) {
+                        pendingJobIds.add(jobId);
+                    } else if (recordType == RECORD_COMPLETED) {
+                        pendingJobIds.remove(jobId);
+                    }
+                }
+            } catch (EOFException e) {
+                // end of journal, or last record was not completely
+                // written because process was killed in the middle
+            } finally {
+                inputStream.close();
+            }
+        } catch (FileNotFoundException e) {
+            // nothing was journaled yet
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read job journal", e);
+        }
+        return pendingJobIds;
+    }
+
+    private static class Record {
+        final byte mType;
+        final int mJobId;
+
+        Record(byte type, int jobId) {
+            mType = type;
+            mJobId = jobId;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects execution statistics for each job id ({@link Job#getMetricsId()}): time spent in queue,
+ * time spent running, outcome counts and concurrency. All counters are
+ * lock-free, so recording does not slow down JobExecutor.
+ */
+public final class JobMetrics {
+    private static final ConcurrentMap<Integer, JobStats> mStats = new ConcurrentHashMap<>();
+    private static final AtomicInteger mRunningJobs = new AtomicInteger();
+    private static final AtomicInteger mMaxRunningJobs = new AtomicInteger();
+
+    private JobMetrics() {
+        // no instances
+    }
+
+    static void onJobEnqueued(Job job) {
+        job.setEnqueueTime(System.nanoTime());
+        getStats(job.getMetricsId()).mEnqueued.incrementAndGet();
+    }
+
+    static void onJobStarted(Job job) {
+        long now = System.nanoTime();
+        job.setStartTime(now);
+
+        JobStats stats = getStats(job.getMetricsId());
+        stats.mQueueWait.record(now - job.getEnqueueTime());
+        updateMax(stats.mMaxRunning, stats.mRunning.incrementAndGet());
+        updateMax(mMaxRunningJobs, mRunningJobs.incrementAndGet());
+    }
+
+    /* should be called exactly once for each job which was taken out of queue */
+    static void onJobFinished(Job job) {
+        JobStats stats = getStats(job.getMetricsId());
+
+        if (job.getStartTime() == 0) {
+            // job was cancelled before it was started
+            stats.mCancelled.incrementAndGet();
+            return;
+        }
+
+        stats.mRunTime.record(System.nanoTime() - job.getStartTime());
+        stats.mRunning.decrementAndGet();
+        mRunningJobs.decrementAndGet();
+
+        if (job.isCancelled()) {
+            stats.mCancelled.incrementAndGet();
+        } else if (job.isSucceeded()) {
+            stats.mSucceeded.incrementAndGet();
+        } else {
+            stats.mFailed.incrementAndGet();
+        }
+    }
+
+    public static int getRunningJobsCount() {
+        return mRunningJobs.get();
+    }
+
+    public static int getMaxRunningJobsCount() {
+        return mMaxRunningJobs.get();
+    }
+
+    /* returns snapshot of statistics for each job id, ordered by id */
+    public static List<Snapshot> getSnapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (ConcurrentMap.Entry<Integer, JobStats> entry : mStats.entrySet()) {
+            snapshots.add(new Snapshot(entry.getKey(), entry.getValue()));
+        }
+
+        Collections.sort(snapshots, new Comparator<Snapshot>() {
+
+            @Override
+            public int compare(Snapshot lhs, Snapshot rhs) {
+                return lhs.getJobId() < rhs.getJobId() ? -1 :
+                        (lhs.getJobId() == rhs.getJobId() ? 0 : 1);
+            }
+        });
+        return snapshots;
+    }
+
+    public static Snapshot getSnapshot(int jobId) {
+        return new Snapshot(jobId, getStats(jobId));
+    }
+
+    /* statistics are reset in place, so jobs which are running are still counted when they finish */
+    public static void reset() {
+        for (JobStats stats : mStats.values()) {
+            stats.reset();
+        }
+        mMaxRunningJobs.set(mRunningJobs.get());
+    }
+
+    private static JobStats getStats(int jobId) {
+        JobStats stats = mStats.get(jobId);
+        if (stats == null) {
+            JobStats newStats = new JobStats();
+            stats = mStats.putIfAbsent(jobId, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private static class JobStats {
+        final Histogram mQueueWait = new Histogram();
+        final Histogram mRunTime = new Histogram();
+        final AtomicLong mEnqueued = new AtomicLong();
+        final AtomicLong mSucceeded = new AtomicLong();
+        final AtomicLong mFailed = new AtomicLong();
+        final AtomicLong mCancelled = new AtomicLong();
+        final AtomicInteger mRunning = new AtomicInteger();
+        final AtomicInteger mMaxRunning = new AtomicInteger();
+
+        /* running count is left as is, it is decremented by jobs in flight */
+        void reset() {
+            mQueueWait.reset();
+            mRunTime.reset();
+            mEnqueued.set(0);
+            mSucceeded.set(0);
+            mFailed.set(0);
+            mCancelled.set(0);
+            mMaxRunning.set(mRunning.get());
+        }
+    }
+
+    /**
+     * Histogram with power-of-two millisecond buckets: bucket i
+     * holds values in range [2^(i-1), 2^i) ms, bucket 0 holds values under 1 ms.
+     */
+    static class Histogram {
+        static final int BUCKETS = 24;
+
+        final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        final AtomicLong mCount = new AtomicLong();
+        final AtomicLong mSum = new AtomicLong();
+        final AtomicLong mMax = new AtomicLong();
+
+        void record(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mSum.addAndGet(millis);
+
+            long max;
+            while ((max = mMax.get()) < millis) {
+                if (mMax.compareAndSet(max, millis)) {
+                    break;
+                }
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+    }
+
+    public static final class HistogramSnapshot {
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+
+        HistogramSnapshot(Histogram histogram) {
+            mBuckets = new long[Histogram.BUCKETS];
+            long count = 0;
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                mBuckets[i] = histogram.mBuckets.get(i);
+                count += mBuckets[i];
+            }
+
+            // buckets are read one by one, count is
+            // derived from them to keep snapshot consistent
+            mCount = count;
+            mSum = histogram.mSum.get();
+            mMax = histogram.mMax.get();
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /* in milliseconds */
+        public long getMean() {
+            return mCount == 0 ? 0 : mSum / mCount;
+        }
+
+        /* in milliseconds */
+        public long getMax() {
+            return mMax;
+        }
+
+        /* returns upper bound (in milliseconds) of bucket which contains given percentile */
+        public long getPercentile(double percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(mCount * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank) {
+                    return Math.min(mMax, 1L << i);
+                }
+            }
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "n=%d mean=%dms p50=%dms p90=%dms max=%dms",
+                    getCount(), getMean(), getPercentile(50), getPercentile(90), getMax());
+        }
+    }
+
+    public static final class Snapshot {
+        private final int mJobId;
+        private final HistogramSnapshot mQueueWait;
+        private final HistogramSnapshot mRunTime;
+        private final long mEnqueued;
+        private final long mSucceeded;
+        private final long mFailed;
+        private final long mCancelled;
+        private final int mRunning;
+        private final int mMaxRunning;
+
+        Snapshot(int jobId, JobStats stats) {
+            mJobId = jobId;
+            mQueueWait = new HistogramSnapshot(stats.mQueueWait);
+            mRunTime = new HistogramSnapshot(stats.mRunTime);
+            mEnqueued = stats.mEnqueued.get();
+            mSucceeded = stats.mSucceeded.get();
+            mFailed = stats.mFailed.get();
+            mCancelled = stats.mCancelled.get();
+            mRunning = stats.mRunning.get();
+            mMaxRunning = stats.mMaxRunning.get();
+        }
+
+        public int getJobId() {
+            return mJobId;
+        }
+
+        /* time between enqueuing and start of job */
+        public HistogramSnapshot getQueueWait() {
+            return mQueueWait;
+        }
+
+        public HistogramSnapshot getRunTime() {
+            return mRunTime;
+        }
+
+        public long getEnqueuedCount() {
+            return mEnqueued;
+        }
+
+        public long getSucceededCount() {
+            return mSucceeded;
+        }
+
+        public long getFailedCount() {
+            return mFailed;
+        }
+
+        public long getCancelledCount() {
+            return mCancelled;
+        }
+
+        public int getRunningCount() {
+            return mRunning;
+        }
+
+        public int getMaxRunningCount() {
+            return mMaxRunning;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "Job %d: enqueued=%d succeeded=%d failed=%d cancelled=%d running=%d (max %d)\n" +
+                            "  queue wait: %s\n  run time: %s",
+                    mJobId, mEnqueued, mSucceeded, mFailed, mCancelled, mRunning,
+                    mMaxRunning, mQueueWait, mRunTime);
+        }
+    }
+}
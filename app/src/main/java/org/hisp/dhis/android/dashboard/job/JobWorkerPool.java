@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.job;
+
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
+
+/**
+ * Bounded thread pool which hands out queued work in order of
+ * {@link Job.Priority} and, within one priority lane, in order of submission.
+ */
+final class JobWorkerPool {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor mThreadPool;
+    private final AtomicLong mSequence;
+
+    JobWorkerPool(String name, int workers) {
+        mSequence = new AtomicLong();
+        mThreadPool = new ThreadPoolExecutor(workers, workers,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new WorkerThreadFactory(name));
+
+        // idle workers should not keep threads alive
+        mThreadPool.allowCoreThreadTimeOut(true);
+    }
+
+    /* returns executor which submits work to this pool within given priority lane */
+    Executor getExecutor(final Job.Priority priority) {
+        isNull(priority, "Priority must not be null");
+
+        return new Executor() {
+
+            @Override
+            public void execute(Runnable runnable) {
+                mThreadPool.execute(new PrioritizedRunnable(
+                        runnable, priority, mSequence.getAndIncrement()));
+            }
+        };
+    }
+
+    private static class PrioritizedRunnable implements Runnable, Comparable<PrioritizedRunnable> {
+        final Runnable mRunnable;
+        final Job.Priority mPriority;
+        final long mSequence;
+
+        PrioritizedRunnable(Runnable runnable, Job.Priority priority, long sequence) {
+            mRunnable = runnable;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            mRunnable.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedRunnable another) {
+            int priorityDiff = mPriority.ordinal() - another.mPriority.ordinal();
+            if (priorityDiff != 0) {
+                return priorityDiff;
+            }
+
+            return mSequence < another.mSequence ? -1 :
+                    (mSequence == another.mSequence ? 0 : 1);
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        final String mName;
+        final AtomicInteger mCount;
+
+        WorkerThreadFactory(String name) {
+            mName = name;
+            mCount = new AtomicInteger(1);
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + " #" + mCount.getAndIncrement());
+        }
+    }
+}
@@ -38,23 +38,58 @@ public abstract class NetworkJob<T> extends Job<ResponseHolder<T>> {
     private final ResourceType mResourceType;
 
     public NetworkJob(int jobId, ResourceType responseType) {
-        super(jobId);
+        this(jobId, responseType, Priority.NORMAL);
+    }
+
+    public NetworkJob(int jobId, ResourceType responseType, Priority priority) {
+        super(jobId, Type.NETWORK, priority);
 
         mResourceType = responseType;
     }
 
+    /* retries are done within worker, so only the last attempt is posted to bus. Requests
+    are made through SDK, which does not expose their calls: cancellation cannot abort
+    request in flight and takes effect once it returns, or during backoff between attempts */
     @Override
     public final ResponseHolder<T> inBackground() {
         ResponseHolder<T> holder = new ResponseHolder<>();
-        try {
-            T item = execute();
-            holder.setItem(item);
-        } catch (APIException exception) {
-            holder.setApiException(exception);
+        RetryPolicy retryPolicy = getRetryPolicy();
+
+        for (int attempt = 1; !isCancelled(); attempt++) {
+            try {
+                T item = execute();
+                holder.setItem(item);
+                holder.setApiException(null);
+                break;
+            } catch (APIException exception) {
+                holder.setApiException(exception);
+
+                if (!retryPolicy.shouldRetry(exception, attempt)) {
+                    break;
+                }
+            }
+
+            try {
+                Thread.sleep(retryPolicy.getBackoff(attempt));
+            } catch (InterruptedException e) {
+                // job was cancelled while waiting
+                Thread.currentThread().interrupt();
+                break;
+            }
         }
         return holder;
     }
 
+    @Override
+    protected final boolean isSuccessful(ResponseHolder<T> result) {
+        return result.getApiException() == null;
+    }
+
+    /* override in order to use policy different from one set for resource type */
+    public RetryPolicy getRetryPolicy() {
+        return RetryPolicy.forResourceType(mResourceType);
+    }
+
     @Override
     public final void onFinish(ResponseHolder<T> result) {
         SessionManager.getInstance()
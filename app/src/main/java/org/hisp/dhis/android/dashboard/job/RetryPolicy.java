@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.job;
+
+import org.hisp.dhis.android.sdk.core.network.APIException;
+import org.hisp.dhis.android.sdk.core.persistence.preferences.ResourceType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
+
+/**
+ * Describes how many times and how often NetworkJob retries its request
+ * when it fails with one of retryable kinds of APIException. Delay grows
+ * exponentially with each attempt and is randomized by jitter in order
+ * to avoid all clients hitting the server at the same time. Requests are
+ * not retried unless their resource type is listed here explicitly.
+ */
+public final class RetryPolicy {
+    public static final RetryPolicy NO_RETRY = new Builder()
+            .setMaxAttempts(1)
+            .build();
+
+    private static final Map<ResourceType, RetryPolicy> mPolicies;
+    private static final Random mRandom = new Random();
+
+    static {
+        Map<ResourceType, RetryPolicy> policies = new EnumMap<>(ResourceType.class);
+
+        // user is waiting for log in, retries should be short
+        policies.put(ResourceType.USERS, new Builder()
+                .setMaxAttempts(2)
+                .setInitialBackoff(500)
+                .build());
+
+        // syncs are idempotent and run in background
+        policies.put(ResourceType.DASHBOARDS, new Builder()
+                .setMaxAttempts(4)
+                .build());
+        policies.put(ResourceType.INTERPRETATIONS, new Builder()
+                .setMaxAttempts(4)
+                .build());
+        mPolicies = Collections.unmodifiableMap(policies);
+    }
+
+    private final int mMaxAttempts;
+    private final long mInitialBackoff;
+    private final long mMaxBackoff;
+    private final double mMultiplier;
+    private final double mJitter;
+    private final Set<APIException.Kind> mRetryableKinds;
+
+    private RetryPolicy(Builder builder) {
+        mMaxAttempts = builder.mMaxAttempts;
+        mInitialBackoff = builder.mInitialBackoff;
+        mMaxBackoff = builder.mMaxBackoff;
+        mMultiplier = builder.mMultiplier;
+        mJitter = builder.mJitter;
+        Set<APIException.Kind> retryableKinds = EnumSet.noneOf(APIException.Kind.class);
+        retryableKinds.addAll(builder.mRetryableKinds);
+        mRetryableKinds = Collections.unmodifiableSet(retryableKinds);
+    }
+
+    /* requests of resource types which were not opted in are made only once */
+    public static RetryPolicy forResourceType(ResourceType resourceType) {
+        RetryPolicy policy = resourceType == null ? null : mPolicies.get(resourceType);
+        return policy != null ? policy : NO_RETRY;
+    }
+
+    /**
+     * @param attempt number of attempt which has just failed, starting from 1.
+     */
+    public boolean shouldRetry(APIException exception, int attempt) {
+        return attempt < mMaxAttempts && exception != null &&
+                mRetryableKinds.contains(exception.getKind());
+    }
+
+    /**
+     * Returns delay in milliseconds before the next attempt.
+     *
+     * @param attempt number of attempt which has just failed, starting from 1.
+     */
+    public long getBackoff(int attempt) {
+        double backoff = mInitialBackoff * Math.pow(mMultiplier, attempt - 1);
+        backoff = Math.min(backoff, mMaxBackoff);
+
+        // spreading delay within [backoff * (1 - jitter), backoff]
+        double jitter = backoff * mJitter * mRandom.nextDouble();
+        return (long) (backoff - jitter);
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    public Set<APIException.Kind> getRetryableKinds() {
+        return mRetryableKinds;
+    }
+
+    public static final class Builder {
+        private int mMaxAttempts = 3;
+        private long mInitialBackoff = 1000;
+        private long mMaxBackoff = 16000;
+        private double mMultiplier = 2.0;
+        private double mJitter = 0.5;
+        private Set<APIException.Kind> mRetryableKinds =
+                EnumSet.of(APIException.Kind.NETWORK);
+
+        public Builder setMaxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("There must be at least one attempt");
+            }
+            mMaxAttempts = maxAttempts;
+            return this;
+        }
+
+        /* in milliseconds */
+        public Builder setInitialBackoff(long initialBackoff) {
+            mInitialBackoff = initialBackoff;
+            return this;
+        }
+
+        /* in milliseconds */
+        public Builder setMaxBackoff(long maxBackoff) {
+            mMaxBackoff = maxBackoff;
+            return this;
+        }
+
+        public Builder setMultiplier(double multiplier) {
+            mMultiplier = multiplier;
+            return this;
+        }
+
+        /* fraction of backoff in range [0, 1] which is randomized */
+        public Builder setJitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("Jitter must be in range [0, 1]");
+            }
+            mJitter = jitter;
+            return this;
+        }
+
+        public Builder setRetryableKinds(Set<APIException.Kind> retryableKinds) {
+            mRetryableKinds = isNull(retryableKinds, "Retryable kinds must not be null");
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
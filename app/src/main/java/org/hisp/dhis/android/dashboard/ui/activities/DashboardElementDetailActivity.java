@@ -38,12 +38,14 @@ import android.view.MenuItem;
 
 import org.hisp.dhis.android.dashboard.R;
 import org.hisp.dhis.android.dashboard.ui.fragments.ImageViewFragment;
-import org.hisp.dhis.android.dashboard.ui.fragments.WebViewFragment;
-import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.dashboard.ui.fragments.ReportTableFragment;
+import org.hisp.dhis.android.dashboard.utils.ChartImageCache;
+import org.hisp.dhis.android.dashboard.utils.ChartImageSize;
 import org.hisp.dhis.android.sdk.models.dashboard.DashboardElement;
 import org.hisp.dhis.android.sdk.models.dashboard.DashboardItemContent;
 import org.hisp.dhis.android.sdk.models.interpretation.Interpretation;
 import org.hisp.dhis.android.sdk.models.interpretation.InterpretationElement;
+import org.joda.time.DateTime;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
@@ -67,11 +69,10 @@ public class DashboardElementDetailActivity extends AppCompatActivity {
         return intent;
     }
 
-    private static String buildImageUrl(String resource, String id) {
-        return Dhis2.getServerUrl().newBuilder()
-                .addPathSegment("api").addPathSegment(resource).addPathSegment(id).addPathSegment("data.png")
-                .addQueryParameter("width", "480").addQueryParameter("height", "320")
-                .toString();
+    /* image is shown in full screen and can be zoomed */
+    private String buildImageUrl(String resource, String id, DateTime lastUpdated) {
+        int width = ChartImageSize.getFullScreenWidth(this);
+        return ChartImageCache.buildUri(resource, id, lastUpdated, width);
     }
 
     private long getDashboardElementId() {
@@ -125,23 +126,23 @@ public class DashboardElementDetailActivity extends AppCompatActivity {
         mToolbar.setTitle(element.getDisplayName());
         switch (element.getDashboardItem().getType()) {
             case DashboardItemContent.TYPE_CHART: {
-                String request = buildImageUrl("charts", element.getUId());
+                String request = buildImageUrl("charts", element.getUId(), element.getLastUpdated());
                 attachFragment(ImageViewFragment.newInstance(request));
                 break;
             }
             case DashboardItemContent.TYPE_EVENT_CHART: {
-                String request = buildImageUrl("eventCharts", element.getUId());
+                String request = buildImageUrl("eventCharts", element.getUId(), element.getLastUpdated());
                 attachFragment(ImageViewFragment.newInstance(request));
                 break;
             }
             case DashboardItemContent.TYPE_MAP: {
-                String request = buildImageUrl("maps", element.getUId());
+                String request = buildImageUrl("maps", element.getUId(), element.getLastUpdated());
                 attachFragment(ImageViewFragment.newInstance(request));
                 break;
             }
             case DashboardItemContent.TYPE_REPORT_TABLE: {
-                String elementId = element.getUId();
-                attachFragment(WebViewFragment.newInstance(elementId));
+                attachFragment(ReportTableFragment.newInstance(
+                        element.getUId(), element.getLastUpdated()));
                 break;
             }
         }
@@ -155,18 +156,18 @@ public class DashboardElementDetailActivity extends AppCompatActivity {
         mToolbar.setTitle(element.getDisplayName());
         switch (element.getInterpretation().getType()) {
             case Interpretation.TYPE_CHART: {
-                String request = buildImageUrl("charts", element.getUId());
+                String request = buildImageUrl("charts", element.getUId(), element.getLastUpdated());
                 attachFragment(ImageViewFragment.newInstance(request));
                 break;
             }
             case Interpretation.TYPE_MAP: {
-                String request = buildImageUrl("maps", element.getUId());
+                String request = buildImageUrl("maps", element.getUId(), element.getLastUpdated());
                 attachFragment(ImageViewFragment.newInstance(request));
                 break;
             }
             case Interpretation.TYPE_REPORT_TABLE: {
-                String elementId = element.getUId();
-                attachFragment(WebViewFragment.newInstance(elementId));
+                attachFragment(ReportTableFragment.newInstance(
+                        element.getUId(), element.getLastUpdated()));
                 break;
             }
             case Interpretation.TYPE_DATA_SET_REPORT: {
@@ -45,6 +45,7 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
 
+import org.hisp.dhis.android.dashboard.BackgroundService;
 import org.hisp.dhis.android.dashboard.R;
 import org.hisp.dhis.android.dashboard.ui.fragments.AccountFragment;
 import org.hisp.dhis.android.dashboard.ui.fragments.SettingsFragment;
@@ -94,6 +95,8 @@ public class MenuActivity extends AppCompatActivity
         mDrawerLayout.setDrawerListener(this);
         mDrawerLayout.setDrawerShadow(R.drawable.drawer_shadow, GravityCompat.START);
         mNavigationView.setNavigationItemSelectedListener(this);
+
+        BackgroundService.scheduleIfNeeded(this);
     }
 
     @Override
@@ -32,18 +32,36 @@ import android.content.Context;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 
+import org.hisp.dhis.android.dashboard.job.Job;
+import org.hisp.dhis.android.dashboard.job.JobExecutor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
 
 public abstract class AbsAdapter<T, VH extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<VH> {
+    /* each adapter has its own diff job id, taken from this range. All
+    diff jobs are recorded by JobMetrics under the first id of range */
+    private static final int DIFF_JOB_ID_OFFSET = 1 << 21;
+    private static final int DIFF_JOB_ID_COUNT = 1 << 20;
+    private static final AtomicInteger mAdapterCount = new AtomicInteger();
+
     private final Context mContext;
     private final LayoutInflater mInflater;
+    private final int mDiffJobId;
     private List<T> mData;
 
+    /* incremented on each swap, so that results of outdated diffs are dropped */
+    private int mGeneration;
+
     public AbsAdapter(Context context, LayoutInflater inflater) {
         mContext = isNull(context, "Context object must not be null");
         mInflater = isNull(inflater, "LayoutInflater object must not be null");
+        mDiffJobId = DIFF_JOB_ID_OFFSET + mAdapterCount.getAndIncrement() % DIFF_JOB_ID_COUNT;
     }
 
     @Override
@@ -63,11 +81,67 @@ public abstract class AbsAdapter<T, VH extends RecyclerView.ViewHolder> extends
         }
     }
 
+    /**
+     * Returns key which identifies given item across data sets (for example, database id).
+     * Adapters which do not override this method are refreshed as a whole on each swap,
+     * right away. Called both from main and background thread.
+     */
+    protected Object getItemKey(T item) {
+        return null;
+    }
+
+    /**
+     * Returns hash of item fields which are shown by adapter. Items with the same
+     * key and different content hash are rebound. Called from background thread.
+     */
+    protected int getItemContentHash(T item) {
+        return item.hashCode();
+    }
+
     public void swapData(List<T> data) {
-        if (mData != data) {
+        swapData(data, null);
+    }
+
+    /**
+     * Replaces data of adapter. When both old and new data are not empty and items
+     * have keys, difference between them is computed on CPU worker pool of JobExecutor
+     * and dispatched as granular notifications, so new data becomes visible through
+     * adapter only after that. Otherwise, data is replaced right away. Callback (if any)
+     * is run on main thread once adapter switches to new data.
+     */
+    public void swapData(List<T> data, Runnable callback) {
+        int generation = ++mGeneration;
+
+        // result of diff which is in flight would be dropped anyway
+        JobExecutor.cancel(mDiffJobId);
+
+        if (mData == data) {
+            runCallback(callback);
+            return;
+        }
+
+        int oldCount = getItemCount();
+        int newCount = data == null ? 0 : data.size();
+        if (oldCount == 0 || newCount == 0) {
+            mData = data;
+            if (oldCount > 0) {
+                notifyItemRangeRemoved(0, oldCount);
+            } else if (newCount > 0) {
+                notifyItemRangeInserted(0, newCount);
+            }
+            runCallback(callback);
+            return;
+        }
+
+        if (getItemKey(data.get(0)) == null) {
             mData = data;
             notifyDataSetChanged();
+            runCallback(callback);
+            return;
         }
+
+        JobExecutor.enqueueJob(new DiffJob(mDiffJobId, generation,
+                new ArrayList<>(mData), data, callback));
     }
 
     public List<T> getData() {
@@ -81,5 +155,189 @@ public abstract class AbsAdapter<T, VH extends RecyclerView.ViewHolder> extends
     public LayoutInflater getLayoutInflater() {
         return mInflater;
     }
-}
 
+    private static void runCallback(Runnable callback) {
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    /* returns null if items can not be matched by keys */
+    private Diff diff(List<T> oldData, List<T> newData) {
+        Map<Object, Integer> oldPositions = mapKeys(oldData);
+        Map<Object, Integer> newPositions = mapKeys(newData);
+        if (oldPositions == null || newPositions == null) {
+            return null;
+        }
+
+        List<Update> updates = new ArrayList<>();
+        List<Object> keys = new ArrayList<>(oldData.size());
+        for (T item : oldData) {
+            keys.add(getItemKey(item));
+        }
+
+        // removals go from the end, so that positions of pending ones stay valid
+        for (int position = keys.size() - 1; position >= 0; position--) {
+            if (!newPositions.containsKey(keys.get(position))) {
+                keys.remove(position);
+                updates.add(new Update(Update.REMOVE, position, position));
+            }
+        }
+
+        // walking new data, each item is either in place, moved from below or inserted
+        for (int position = 0; position < newData.size(); position++) {
+            Object key = getItemKey(newData.get(position));
+            if (position < keys.size() && key.equals(keys.get(position))) {
+                continue;
+            }
+
+            if (oldPositions.containsKey(key)) {
+                int fromPosition = keys.indexOf(key);
+                keys.remove(fromPosition);
+                keys.add(position, key);
+                updates.add(new Update(Update.MOVE, fromPosition, position));
+            } else {
+                keys.add(position, key);
+                updates.add(new Update(Update.INSERT, position, position));
+            }
+        }
+
+        // view holders keep references to models, so unchanged items are
+        // taken from old data in order to be found by client code later
+        List<T> data = new ArrayList<>(newData.size());
+        for (int position = 0; position < newData.size(); position++) {
+            T newItem = newData.get(position);
+            Integer oldPosition = oldPositions.get(getItemKey(newItem));
+            if (oldPosition == null) {
+                data.add(newItem);
+            } else if (getItemContentHash(oldData.get(oldPosition)) != getItemContentHash(newItem)) {
+                data.add(newItem);
+                updates.add(new Update(Update.CHANGE, position, position));
+            } else {
+                data.add(oldData.get(oldPosition));
+            }
+        }
+
+        return new Diff(data, updates);
+    }
+
+    /* returns null if any key is missing or not unique */
+    private Map<Object, Integer> mapKeys(List<T> data) {
+        Map<Object, Integer> positions = new HashMap<>();
+        for (int position = 0; position < data.size(); position++) {
+            Object key = getItemKey(data.get(position));
+            if (key == null || positions.put(key, position) != null) {
+                return null;
+            }
+        }
+        return positions;
+    }
+
+    private void dispatch(List<Update> updates) {
+        for (Update update : updates) {
+            switch (update.type) {
+                case Update.INSERT: {
+                    notifyItemInserted(update.toPosition);
+                    break;
+                }
+                case Update.REMOVE: {
+                    notifyItemRemoved(update.fromPosition);
+                    break;
+                }
+                case Update.MOVE: {
+                    notifyItemMoved(update.fromPosition, update.toPosition);
+                    break;
+                }
+                case Update.CHANGE: {
+                    notifyItemChanged(update.toPosition);
+                    break;
+                }
+            }
+        }
+    }
+
+    /* fragments remove items from data directly before database is updated,
+    which makes diff computed against old snapshot invalid */
+    private boolean isUnchanged(List<T> snapshot) {
+        if (mData == null || mData.size() != snapshot.size()) {
+            return false;
+        }
+
+        for (int position = 0; position < snapshot.size(); position++) {
+            if (mData.get(position) != snapshot.get(position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class Diff {
+        final List<T> data;
+        final List<Update> updates;
+
+        Diff(List<T> data, List<Update> updates) {
+            this.data = data;
+            this.updates = updates;
+        }
+    }
+
+    private static final class Update {
+        static final int INSERT = 0;
+        static final int REMOVE = 1;
+        static final int MOVE = 2;
+        static final int CHANGE = 3;
+
+        final int type;
+        final int fromPosition;
+        final int toPosition;
+
+        Update(int type, int fromPosition, int toPosition) {
+            this.type = type;
+            this.fromPosition = fromPosition;
+            this.toPosition = toPosition;
+        }
+    }
+
+    private final class DiffJob extends Job<Diff> {
+        final int mJobGeneration;
+        final List<T> mOldData;
+        final List<T> mNewData;
+        final Runnable mCallback;
+
+        DiffJob(int jobId, int generation, List<T> oldData, List<T> newData, Runnable callback) {
+            // user is waiting for list to be updated
+            super(jobId, Type.CPU, Priority.HIGH);
+
+            mJobGeneration = generation;
+            mOldData = oldData;
+            mNewData = newData;
+            mCallback = callback;
+        }
+
+        @Override
+        public int getMetricsId() {
+            return DIFF_JOB_ID_OFFSET;
+        }
+
+        @Override
+        public Diff inBackground() {
+            return diff(mOldData, mNewData);
+        }
+
+        @Override
+        public void onFinish(Diff diff) {
+            if (mJobGeneration != mGeneration) {
+                return;
+            }
+
+            if (diff != null && isUnchanged(mOldData)) {
+                mData = diff.data;
+                dispatch(diff.updates);
+            } else {
+                mData = mNewData;
+                notifyDataSetChanged();
+            }
+            runCallback(mCallback);
+        }
+    }
+}
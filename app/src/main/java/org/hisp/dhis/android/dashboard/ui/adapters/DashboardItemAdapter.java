@@ -42,13 +42,19 @@ import android.widget.TextView;
 import com.squareup.picasso.Picasso;
 
 import org.hisp.dhis.android.dashboard.R;
+import org.hisp.dhis.android.dashboard.ui.views.TableView;
+import org.hisp.dhis.android.dashboard.utils.ChartImageCache;
+import org.hisp.dhis.android.dashboard.utils.ChartImageSize;
 import org.hisp.dhis.android.dashboard.utils.PicassoProvider;
-import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.dashboard.utils.ReportTable;
+import org.hisp.dhis.android.dashboard.utils.ReportTablePreviews;
 import org.hisp.dhis.android.sdk.models.common.Access;
 import org.hisp.dhis.android.sdk.models.dashboard.DashboardElement;
 import org.hisp.dhis.android.sdk.models.dashboard.DashboardItem;
 import org.hisp.dhis.android.sdk.models.dashboard.DashboardItemContent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import butterknife.Bind;
@@ -111,11 +117,24 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
         mImageLoader = PicassoProvider.getInstance(context);
     }
 
-    private static String buildImageUrl(String resource, String id) {
-        return Dhis2.getServerUrl().newBuilder()
-                .addPathSegment("api").addPathSegment(resource).addPathSegment(id).addPathSegment("data.png")
-                .addQueryParameter("width", "480").addQueryParameter("height", "320")
-                .toString();
+    @Override
+    protected Object getItemKey(DashboardItem item) {
+        return item.getId();
+    }
+
+    /* card depends on type of item and on its elements */
+    @Override
+    protected int getItemContentHash(DashboardItem item) {
+        int hash = Arrays.hashCode(new Object[]{
+                item.getType(), item.getLastUpdated()});
+        List<DashboardElement> elements = item.getDashboardElements();
+        if (elements != null) {
+            for (DashboardElement element : elements) {
+                hash = 31 * hash + Arrays.hashCode(new Object[]{element.getUId(),
+                        element.getLastUpdated(), element.getDisplayName()});
+            }
+        }
+        return hash;
     }
 
     /* returns type of row depending on item content type. */
@@ -142,35 +161,40 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
 
     public final int getSpanSize(int position) {
         if (getItemCount() > position) {
-            DashboardItem dashboardItem = getItem(position);
+            return getSpanSize(getItem(position), mMaxSpanCount);
+        }
 
-            String itemShape = dashboardItem.getShape();
-            if (itemShape == null) {
-                itemShape = DashboardItem.SHAPE_NORMAL;
-            }
+        return 1;
+    }
 
-            switch (itemShape) {
-                case DashboardItem.SHAPE_NORMAL: {
-                    return getSpanSizeNormal();
-                }
-                case DashboardItem.SHAPE_FULL_WIDTH: {
-                    return getSpanSizeFull();
-                }
-                case DashboardItem.SHAPE_DOUBLE_WIDTH: {
-                    return getSpanSizeDouble();
-                }
+    /* returns number of columns which dashboard item occupies in grid */
+    public static int getSpanSize(DashboardItem dashboardItem, int maxSpanCount) {
+        String itemShape = dashboardItem.getShape();
+        if (itemShape == null) {
+            itemShape = DashboardItem.SHAPE_NORMAL;
+        }
+
+        switch (itemShape) {
+            case DashboardItem.SHAPE_NORMAL: {
+                return getSpanSizeNormal();
+            }
+            case DashboardItem.SHAPE_FULL_WIDTH: {
+                return getSpanSizeFull(maxSpanCount);
+            }
+            case DashboardItem.SHAPE_DOUBLE_WIDTH: {
+                return getSpanSizeDouble(maxSpanCount);
             }
         }
 
         return 1;
     }
 
-    private int getSpanSizeNormal() {
+    private static int getSpanSizeNormal() {
         return 1;
     }
 
-    private int getSpanSizeDouble() {
-        switch (mMaxSpanCount) {
+    private static int getSpanSizeDouble(int maxSpanCount) {
+        switch (maxSpanCount) {
             case 1:
                 return 1;
             case 2:
@@ -188,8 +212,8 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
     // Generic item view handling logic.
     /////////////////////////////////////////////////////////////////////////
 
-    private int getSpanSizeFull() {
-        return mMaxSpanCount;
+    private static int getSpanSizeFull(int maxSpanCount) {
+        return maxSpanCount;
     }
 
     /**
@@ -276,9 +300,9 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
                 return new ImageItemViewHolder(imageView, mClickListener);
             }
             case ITEM_WITH_TABLE_TYPE: {
-                TextView textView = (TextView) getLayoutInflater()
-                        .inflate(R.layout.recycler_view_dashboard_item_textview, parent, false);
-                return new TextItemViewHolder(textView, mClickListener);
+                View container = getLayoutInflater()
+                        .inflate(R.layout.recycler_view_dashboard_item_table, parent, false);
+                return new TextItemViewHolder(container, mClickListener);
             }
             case ITEM_WITH_LIST_TYPE: {
                 LinearLayout textViewContainer = (LinearLayout) getLayoutInflater()
@@ -307,23 +331,72 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
         }
     }
 
-    /* builds the URL to image data and loads it by means of Picasso. */
-    private void handleItemsWithImages(ImageItemViewHolder holder, DashboardItem item) {
-        DashboardElement element = null;
-        String request = null;
-        if (DashboardItemContent.TYPE_CHART.equals(item.getType()) && item.getChart() != null) {
-            element = item.getChart();
-            request = buildImageUrl("charts", element.getUId());
-        } else if (DashboardItemContent.TYPE_MAP.equals(item.getType()) && item.getMap() != null) {
-            element = item.getMap();
-            request = buildImageUrl("maps", element.getUId());
-        } else if (DashboardItemContent.TYPE_EVENT_CHART.equals(item.getType()) && item.getEventChart() != null) {
-            element = item.getEventChart();
-            request = buildImageUrl("eventCharts", element.getUId());
+    /* returns URL to image of item at given position or null, if item has no image */
+    public String getImageUrl(int position) {
+        DashboardItem item = getItem(position);
+        if (item == null) {
+            return null;
         }
+        return getImageUrl(getContext(), item, mMaxSpanCount);
+    }
 
-        holder.listener.setDashboardElement(element);
-        mImageLoader.load(request)
+    /**
+     * Builds URL to image of dashboard item sized for card which item occupies in grid.
+     * Returns null if item is neither chart, map nor event chart.
+     */
+    public static String getImageUrl(Context context, DashboardItem item, int maxSpanCount) {
+        DashboardElement element = getImageElement(item);
+        if (element == null) {
+            return null;
+        }
+
+        String resource;
+        if (DashboardItemContent.TYPE_CHART.equals(item.getType())) {
+            resource = "charts";
+        } else if (DashboardItemContent.TYPE_MAP.equals(item.getType())) {
+            resource = "maps";
+        } else {
+            resource = "eventCharts";
+        }
+
+        int width = ChartImageSize.getCardWidth(context,
+                getSpanSize(item, maxSpanCount), maxSpanCount);
+        return ChartImageCache.buildUri(resource, element.getUId(),
+                element.getLastUpdated(), width);
+    }
+
+    /* returns URLs to images of given items in the same order, skipping items without images */
+    public static List<String> getImageUrls(Context context, List<DashboardItem> items,
+                                            int maxSpanCount) {
+        List<String> imageUrls = new ArrayList<>();
+        if (items == null) {
+            return imageUrls;
+        }
+
+        for (DashboardItem item : items) {
+            String imageUrl = getImageUrl(context, item, maxSpanCount);
+            if (imageUrl != null) {
+                imageUrls.add(imageUrl);
+            }
+        }
+        return imageUrls;
+    }
+
+    private static DashboardElement getImageElement(DashboardItem item) {
+        if (DashboardItemContent.TYPE_CHART.equals(item.getType())) {
+            return item.getChart();
+        } else if (DashboardItemContent.TYPE_MAP.equals(item.getType())) {
+            return item.getMap();
+        } else if (DashboardItemContent.TYPE_EVENT_CHART.equals(item.getType())) {
+            return item.getEventChart();
+        }
+        return null;
+    }
+
+    /* builds the URL to image data and loads it by means of Picasso. */
+    private void handleItemsWithImages(ImageItemViewHolder holder, DashboardItem item) {
+        holder.listener.setDashboardElement(getImageElement(item));
+        mImageLoader.load(getImageUrl(getContext(), item, mMaxSpanCount))
                 .placeholder(R.mipmap.ic_stub_dashboard_item)
                 .into(holder.imageView);
     }
@@ -344,6 +417,25 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
             holder.listener.setDashboardElement(element);
             holder.textView.setText(element.getDisplayName());
         }
+
+        // previews are read from disk by loader, so binding never touches disk or network
+        ReportTable preview = null;
+        if (element != null && DashboardItemContent.TYPE_REPORT_TABLE.equals(item.getType())) {
+            preview = ReportTablePreviews.getInstance()
+                    .peek(element.getUId(), element.getLastUpdated());
+        }
+
+        if (preview != null) {
+            if (holder.tablePreview.getTable() != preview) {
+                holder.tablePreview.setTable(preview);
+            }
+            holder.tablePreview.setVisibility(View.VISIBLE);
+            holder.textView.setVisibility(View.GONE);
+        } else {
+            holder.tablePreview.setTable(null);
+            holder.tablePreview.setVisibility(View.GONE);
+            holder.textView.setVisibility(View.VISIBLE);
+        }
     }
 
     private void handleItemsWithLists(ListItemViewHolder holder, DashboardItem item) {
@@ -447,7 +539,7 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
                     mListener.onContentClick(mElement);
                     break;
                 }
-                case R.id.dashboard_item_text: {
+                case R.id.dashboard_item_table: {
                     mListener.onContentClick(mElement);
                     break;
                 }
@@ -475,18 +567,23 @@ public class DashboardItemAdapter extends AbsAdapter<DashboardItem, DashboardIte
 
     static class TextItemViewHolder implements IElementContentViewHolder {
         final OnElementInternalClickListener listener;
+        final View container;
         final TextView textView;
+        final TableView tablePreview;
 
-        public TextItemViewHolder(TextView view, OnItemClickListener outerListener) {
-            textView = view;
+        public TextItemViewHolder(View view, OnItemClickListener outerListener) {
+            container = view;
+            textView = (TextView) view.findViewById(R.id.dashboard_item_text);
+            tablePreview = (TableView) view.findViewById(R.id.dashboard_item_table_preview);
+            tablePreview.setScrollEnabled(false);
 
             listener = new OnElementInternalClickListener(outerListener);
-            textView.setOnClickListener(this.listener);
+            container.setOnClickListener(this.listener);
         }
 
         @Override
         public View getView() {
-            return textView;
+            return container;
         }
     }
 
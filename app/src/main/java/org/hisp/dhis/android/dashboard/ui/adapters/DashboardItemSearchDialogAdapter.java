@@ -25,10 +25,19 @@ import android.widget.Filterable;
 import android.widget.TextView;
 
 import org.hisp.dhis.android.dashboard.R;
+import org.hisp.dhis.android.dashboard.utils.WordPrefixIndex;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 public class DashboardItemSearchDialogAdapter extends BaseAdapter implements Filterable {
@@ -45,14 +54,21 @@ public class DashboardItemSearchDialogAdapter extends BaseAdapter implements Fil
      * The content of this list is referred to as "the array" in the documentation.
      */
     private List<OptionAdapterValue> mObjects;
-    // A copy of the original mObjects array, initialized from and then used instead as soon as
-    // the mFilter ArrayFilter is used. mObjects will then only contain the filtered values.
-    private ArrayList<OptionAdapterValue> mOriginalValues;
+    // All values of adapter. mObjects only contains those of them which pass the filter
+    // and is replaced when filter publishes its results.
+    private final ArrayList<OptionAdapterValue> mOriginalValues;
+    // Incremented on each modification of data, so that filter knows when to rebuild its index.
+    private int mVersion;
     private ArrayFilter mFilter;
+    // Last requested text constraint, which is applied again when data or types change.
+    private CharSequence mConstraint;
+    // Types of values to show, or null if values of all types are shown.
+    private volatile Set<String> mTypes;
 
     public DashboardItemSearchDialogAdapter(LayoutInflater inflater) {
         mInflater = inflater;
         mObjects = new ArrayList<>();
+        mOriginalValues = new ArrayList<>();
     }
 
     /**
@@ -133,7 +149,27 @@ public class DashboardItemSearchDialogAdapter extends BaseAdapter implements Fil
 
         clear();
         addAll(values);
-        notifyDataSetChanged();
+
+        // shown values are replaced once filter publishes its results
+        getFilter().filter(mConstraint);
+    }
+
+    /**
+     * Filters values by text. Should be used instead of filtering through
+     * {@link #getFilter()} directly, so constraint survives changes of data and types.
+     */
+    public void filter(CharSequence constraint) {
+        mConstraint = constraint;
+        getFilter().filter(constraint);
+    }
+
+    /**
+     * Shows only values of given types. Combined with text constraint in memory,
+     * so data does not have to be reloaded.
+     */
+    public void setTypes(Collection<String> types) {
+        mTypes = types == null ? null : Collections.unmodifiableSet(new HashSet<>(types));
+        getFilter().filter(mConstraint);
     }
 
     /**
@@ -143,11 +179,8 @@ public class DashboardItemSearchDialogAdapter extends BaseAdapter implements Fil
      */
     private void addAll(Collection<OptionAdapterValue> collection) {
         synchronized (mLock) {
-            if (mOriginalValues != null) {
-                mOriginalValues.addAll(collection);
-            } else {
-                mObjects.addAll(collection);
-            }
+            mOriginalValues.addAll(collection);
+            mVersion++;
         }
     }
 
@@ -156,11 +189,29 @@ public class DashboardItemSearchDialogAdapter extends BaseAdapter implements Fil
      */
     private void clear() {
         synchronized (mLock) {
-            if (mOriginalValues != null) {
-                mOriginalValues.clear();
-            } else {
-                mObjects.clear();
-            }
+            mOriginalValues.clear();
+            mVersion++;
+        }
+    }
+
+    /* read-only view of values at given positions */
+    private static class PositionList extends AbstractList<OptionAdapterValue> {
+        private final List<OptionAdapterValue> mValues;
+        private final int[] mPositions;
+
+        public PositionList(List<OptionAdapterValue> values, int[] positions) {
+            mValues = values;
+            mPositions = positions;
+        }
+
+        @Override
+        public OptionAdapterValue get(int location) {
+            return mValues.get(mPositions[location]);
+        }
+
+        @Override
+        public int size() {
+            return mPositions.length;
         }
     }
 
@@ -175,10 +226,16 @@ public class DashboardItemSearchDialogAdapter extends BaseAdapter implements Fil
     public static class OptionAdapterValue {
         public final String id;
         public final String label;
+        public final String type;
 
         public OptionAdapterValue(String id, String label) {
+            this(id, label, null);
+        }
+
+        public OptionAdapterValue(String id, String label, String type) {
             this.id = id;
             this.label = label;
+            this.type = type;
         }
 
         private static boolean objectsEqual(Object a, Object b) {
@@ -202,66 +259,102 @@ public class DashboardItemSearchDialogAdapter extends BaseAdapter implements Fil
 
     /**
      * <p>An array filter constrains the content of the array adapter with
-     * a prefix. Each item that does not start with the supplied prefix
-     * is removed from the list.</p>
+     * a prefix. Each item which does not start with the supplied prefix
+     * and does not contain a word starting with it is removed from the list.</p>
+     *
+     * <p>Filtering runs on a single worker thread. Values are copied and indexed
+     * once per data set, and when prefix is extended, previous result is narrowed
+     * instead of scanning all values again. Values of types which are not shown
+     * are excluded using bit set of each type.</p>
      */
     private class ArrayFilter extends Filter {
+        /* state below is accessed only from filtering thread */
+        private List<OptionAdapterValue> mIndexedValues;
+        private WordPrefixIndex mIndex;
+        private Map<String, BitSet> mTypePositions;
+        private int mIndexedVersion = -1;
+
+        /* matches of last prefix, regardless of types */
+        private String mLastPrefix;
+        private int[] mLastPositions;
 
         @Override
         protected FilterResults performFiltering(CharSequence prefix) {
             FilterResults results = new FilterResults();
 
-            if (mOriginalValues == null) {
-                synchronized (mLock) {
-                    mOriginalValues = new ArrayList<>(mObjects);
+            synchronized (mLock) {
+                if (mIndexedVersion != mVersion) {
+                    mIndexedValues = new ArrayList<>(mOriginalValues);
+                    mIndexedVersion = mVersion;
+                    mIndex = null;
                 }
             }
 
-            if (prefix == null || prefix.length() == 0) {
-                ArrayList<OptionAdapterValue> list;
-                synchronized (mLock) {
-                    list = new ArrayList<>(mOriginalValues);
-                }
-                results.values = list;
-                results.count = list.size();
+            if (mIndex == null) {
+                buildIndex();
+            }
+
+            String prefixString = prefix == null ? "" : prefix.toString().toLowerCase();
+
+            // narrowing from empty prefix would scan all labels, index lookup is cheaper
+            int[] positions;
+            if (mLastPrefix != null && !mLastPrefix.isEmpty() &&
+                    prefixString.startsWith(mLastPrefix)) {
+                positions = mIndex.narrow(mLastPositions, prefixString);
             } else {
-                String prefixString = prefix.toString().toLowerCase();
+                positions = mIndex.find(prefixString);
+            }
+            mLastPrefix = prefixString;
+            mLastPositions = positions;
 
-                ArrayList<OptionAdapterValue> values;
-                synchronized (mLock) {
-                    values = new ArrayList<>(mOriginalValues);
-                }
+            Set<String> types = mTypes;
+            if (types != null) {
+                positions = retainTypes(positions, types);
+            }
+
+            // values are looked up lazily, as list binds only visible rows
+            results.values = new PositionList(mIndexedValues, positions);
+            results.count = positions.length;
+            return results;
+        }
 
-                final int count = values.size();
-                final ArrayList<OptionAdapterValue> newValues = new ArrayList<>();
-
-                for (int i = 0; i < count; i++) {
-                    final OptionAdapterValue optionValue = values.get(i);
-                    final String value = optionValue.label;
-                    final String valueText = value.toLowerCase();
-
-                    // First match against the whole, non-splitted value
-                    if (valueText.startsWith(prefixString)) {
-                        newValues.add(optionValue);
-                    } else {
-                        final String[] words = valueText.split(" ");
-                        final int wordCount = words.length;
-
-                        // Start at index 0, in case valueText starts with space(s)
-                        for (int k = 0; k < wordCount; k++) {
-                            if (words[k].startsWith(prefixString)) {
-                                newValues.add(optionValue);
-                                break;
-                            }
-                        }
-                    }
+        private void buildIndex() {
+            List<String> labels = new ArrayList<>(mIndexedValues.size());
+            mTypePositions = new HashMap<>();
+            for (int position = 0; position < mIndexedValues.size(); position++) {
+                OptionAdapterValue value = mIndexedValues.get(position);
+                labels.add(value.label);
+
+                BitSet typePositions = mTypePositions.get(value.type);
+                if (typePositions == null) {
+                    typePositions = new BitSet(mIndexedValues.size());
+                    mTypePositions.put(value.type, typePositions);
                 }
+                typePositions.set(position);
+            }
 
-                results.values = newValues;
-                results.count = newValues.size();
+            mIndex = new WordPrefixIndex(labels);
+            mLastPrefix = null;
+            mLastPositions = null;
+        }
+
+        private int[] retainTypes(int[] positions, Set<String> types) {
+            BitSet allowed = new BitSet(mIndexedValues.size());
+            for (String type : types) {
+                BitSet typePositions = mTypePositions.get(type);
+                if (typePositions != null) {
+                    allowed.or(typePositions);
+                }
             }
 
-            return results;
+            int count = 0;
+            int[] retained = new int[positions.length];
+            for (int position : positions) {
+                if (allowed.get(position)) {
+                    retained[count++] = position;
+                }
+            }
+            return Arrays.copyOf(retained, count);
         }
 
         @Override
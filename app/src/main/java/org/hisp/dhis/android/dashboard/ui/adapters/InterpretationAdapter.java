@@ -41,11 +41,15 @@ import com.squareup.picasso.Picasso;
 
 import org.hisp.dhis.android.dashboard.R;
 import org.hisp.dhis.android.dashboard.ui.adapters.InterpretationAdapter.InterpretationHolder;
+import org.hisp.dhis.android.dashboard.utils.ChartImageCache;
+import org.hisp.dhis.android.dashboard.utils.ChartImageSize;
 import org.hisp.dhis.android.dashboard.utils.PicassoProvider;
-import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.sdk.models.common.Access;
 import org.hisp.dhis.android.sdk.models.interpretation.Interpretation;
 import org.hisp.dhis.android.sdk.models.interpretation.InterpretationElement;
 
+import java.util.Arrays;
+
 /**
  * @author Araz Abishov <araz.abishov.gsoc@gmail.com>.
  */
@@ -74,11 +78,52 @@ public final class InterpretationAdapter extends AbsAdapter<Interpretation, Inte
         mImageLoader = PicassoProvider.getInstance(context);
     }
 
-    private static String buildImageUrl(String resource, String id) {
-        return Dhis2.getServerUrl().newBuilder()
-                .addPathSegment("api").addPathSegment(resource).addPathSegment(id).addPathSegment("data.png")
-                .addQueryParameter("width", "480").addQueryParameter("height", "320")
-                .toString();
+    @Override
+    protected Object getItemKey(Interpretation item) {
+        return item.getId();
+    }
+
+    /* row depends on element as well, since image URL is built from its lastUpdated */
+    @Override
+    protected int getItemContentHash(Interpretation item) {
+        int commentsCount = item.getComments() == null ? 0 : item.getComments().size();
+        String userName = item.getUser() == null ? null : item.getUser().getDisplayName();
+        Access access = item.getAccess();
+        InterpretationElement element = getElement(item);
+        return Arrays.hashCode(new Object[]{item.getType(), item.getText(), item.getCreated(),
+                userName, commentsCount,
+                access == null ? null : access.isUpdate(),
+                access == null ? null : access.isDelete(),
+                element == null ? null : element.getUId(),
+                element == null ? null : element.getLastUpdated(),
+                element == null ? null : element.getDisplayName()});
+    }
+
+    /* returns element which is shown by interpretation of given type, or null */
+    private static InterpretationElement getElement(Interpretation item) {
+        if (item.getType() == null) {
+            return null;
+        }
+
+        switch (item.getType()) {
+            case Interpretation.TYPE_CHART:
+                return item.getChart();
+            case Interpretation.TYPE_MAP:
+                return item.getMap();
+            case Interpretation.TYPE_REPORT_TABLE:
+                return item.getReportTable();
+            case Interpretation.TYPE_DATA_SET_REPORT:
+                return item.getDataSet();
+            default:
+                return null;
+        }
+    }
+
+    /* interpretations are shown in single column list */
+    private String buildImageUrl(String resource, InterpretationElement element) {
+        int width = ChartImageSize.getCardWidth(getContext(), 1, 1);
+        return ChartImageCache.buildUri(resource, element.getUId(),
+                element.getLastUpdated(), width);
     }
 
     /* returns type of row depending on item content type. */
@@ -221,10 +266,10 @@ public final class InterpretationAdapter extends AbsAdapter<Interpretation, Inte
         String request = null;
         if (Interpretation.TYPE_CHART.equals(item.getType()) && item.getChart() != null) {
             InterpretationElement element = item.getChart();
-            request = buildImageUrl("charts", element.getUId());
+            request = buildImageUrl("charts", element);
         } else if (Interpretation.TYPE_MAP.equals(item.getType()) && item.getMap() != null) {
             InterpretationElement element = item.getMap();
-            request = buildImageUrl("maps", element.getUId());
+            request = buildImageUrl("maps", element);
         }
 
         holder.listener.setInterpretation(item);
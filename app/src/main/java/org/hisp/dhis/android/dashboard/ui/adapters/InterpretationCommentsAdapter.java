@@ -41,6 +41,8 @@ import org.hisp.dhis.android.sdk.models.interpretation.InterpretationComment;
 import org.hisp.dhis.android.sdk.models.user.User;
 import org.joda.time.DateTime;
 
+import java.util.Arrays;
+
 import static android.text.TextUtils.isEmpty;
 
 /**
@@ -65,6 +67,18 @@ public final class InterpretationCommentsAdapter extends AbsAdapter<Interpretati
         mUser = user;
     }
 
+    @Override
+    protected Object getItemKey(InterpretationComment item) {
+        return item.getId();
+    }
+
+    @Override
+    protected int getItemContentHash(InterpretationComment item) {
+        User user = item.getUser();
+        return Arrays.hashCode(new Object[]{item.getText(), item.getLastUpdated(),
+                user == null ? null : user.getDisplayName(), user == null ? null : user.getName()});
+    }
+
     @Override
     public CommentViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         return new CommentViewHolder(
@@ -80,4 +80,12 @@ public class ImageViewFragment extends BaseFragment {
                 .placeholder(R.mipmap.ic_stub_dashboard_item)
                 .into(mImageView);
     }
+
+    @Override
+    public void onDestroyView() {
+        // releasing download slot and radio as soon as user leaves
+        PicassoProvider.getInstance(getActivity().getApplicationContext())
+                .cancelRequest(mImageView);
+        super.onDestroyView();
+    }
 }
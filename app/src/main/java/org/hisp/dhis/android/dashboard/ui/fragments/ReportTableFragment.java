@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.ui.fragments;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.hisp.dhis.android.dashboard.R;
+import org.hisp.dhis.android.dashboard.job.Job;
+import org.hisp.dhis.android.dashboard.job.JobExecutor;
+import org.hisp.dhis.android.dashboard.ui.views.TableView;
+import org.hisp.dhis.android.dashboard.utils.ReportTable;
+import org.hisp.dhis.android.dashboard.utils.ReportTableCache;
+import org.hisp.dhis.android.sdk.core.persistence.models.common.meta.ResponseHolder;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+
+import butterknife.Bind;
+import butterknife.ButterKnife;
+
+import static android.text.TextUtils.isEmpty;
+
+/**
+ * Shows report table natively, using JSON form of table. Like in
+ * {@link WebViewFragment}, cached copy is shown first and revalidated
+ * afterwards. When table cannot be obtained in JSON form, fragment is
+ * replaced with {@link WebViewFragment}, which also reports errors.
+ */
+public class ReportTableFragment extends BaseFragment {
+    private static final String TAG = ReportTableFragment.class.getSimpleName();
+    private static final String DASHBOARD_ELEMENT_ID = "arg:dashboardElementId";
+    private static final String LAST_UPDATED = "arg:lastUpdated";
+    private static final String FORMAT = "json";
+
+    @Bind(R.id.report_table_view)
+    TableView mTableView;
+
+    @Bind(R.id.container_layout_progress_bar)
+    View mProgressBarContainer;
+
+    ReportTableCache mCache;
+
+    /* entry which is currently shown in table view */
+    ReportTableCache.Entry mEntry;
+
+    /**
+     * @param id          UID of report table.
+     * @param lastUpdated last time report table was updated, can be null.
+     */
+    public static ReportTableFragment newInstance(String id, DateTime lastUpdated) {
+        Bundle args = new Bundle();
+        args.putString(DASHBOARD_ELEMENT_ID, id);
+        args.putLong(LAST_UPDATED, lastUpdated != null ? lastUpdated.getMillis() : 0);
+
+        ReportTableFragment fragment = new ReportTableFragment();
+        fragment.setArguments(args);
+
+        return fragment;
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_report_table, container, false);
+    }
+
+    @Override
+    public void onViewCreated(View view, Bundle savedInstanceState) {
+        ButterKnife.bind(this, view);
+
+        mCache = ReportTableCache.getInstance(getActivity(), FORMAT);
+        if (getArguments() != null && !isEmpty(getArguments()
+                .getString(DASHBOARD_ELEMENT_ID))) {
+            // cached copy is shown first and revalidated afterwards
+            JobExecutor.enqueueJob(new ReadReportTableJob(this, null));
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        // there is no one to show report table to
+        JobExecutor.cancel(ReadReportTableJob.JOB_ID);
+        JobExecutor.cancel(GetReportTableJob.JOB_ID);
+        super.onDestroyView();
+    }
+
+    String getDashboardElementId() {
+        return getArguments().getString(DASHBOARD_ELEMENT_ID);
+    }
+
+    DateTime getLastUpdated() {
+        long lastUpdated = getArguments().getLong(LAST_UPDATED);
+        return lastUpdated != 0 ? new DateTime(lastUpdated) : null;
+    }
+
+    void onTableRead(ParsedReportTable result, boolean isCached) {
+        if (result != null && result.table != null) {
+            mEntry = result.entry;
+            mProgressBarContainer.setVisibility(View.GONE);
+            mTableView.setTable(result.table);
+        } else if (!isCached) {
+            // server returned something, what cannot be shown natively
+            showWebView();
+            return;
+        }
+
+        if (isCached) {
+            JobExecutor.enqueueJob(new GetReportTableJob(this,
+                    result != null && result.table != null ? result.entry : null));
+        }
+    }
+
+    void onDataDownloaded(ResponseHolder<ReportTableCache.Entry> data) {
+        ReportTableCache.Entry entry = data.getItem();
+        if (entry != null && !entry.hasSameContent(mEntry)) {
+            JobExecutor.cancel(ReadReportTableJob.JOB_ID);
+            JobExecutor.enqueueJob(new ReadReportTableJob(this, entry));
+        } else if (entry == null && mEntry == null) {
+            showWebView();
+        }
+    }
+
+    private void showWebView() {
+        if (!isAdded()) {
+            return;
+        }
+
+        // results of jobs can arrive after state of activity was saved,
+        // in which case fragment is recreated from its arguments anyway
+        getFragmentManager().beginTransaction()
+                .replace(getId(), WebViewFragment.newInstance(
+                        getDashboardElementId(), getLastUpdated()))
+                .commitAllowingStateLoss();
+    }
+
+    static class ParsedReportTable {
+        final ReportTableCache.Entry entry;
+        final ReportTable table;
+
+        ParsedReportTable(ReportTableCache.Entry entry, ReportTable table) {
+            this.entry = entry;
+            this.table = table;
+        }
+    }
+
+    /* reads and parses either given entry or cached copy of table */
+    static class ReadReportTableJob extends Job<ParsedReportTable> {
+        static final int JOB_ID = 4573453;
+
+        final WeakReference<ReportTableFragment> mFragmentRef;
+        final ReportTableCache mCache;
+        final String mDashboardElementId;
+        final DateTime mLastUpdated;
+        final ReportTableCache.Entry mEntry;
+
+        public ReadReportTableJob(ReportTableFragment fragment, ReportTableCache.Entry entry) {
+            super(JOB_ID, Type.DISK, Priority.HIGH);
+
+            mFragmentRef = new WeakReference<>(fragment);
+            mCache = fragment.mCache;
+            mDashboardElementId = fragment.getDashboardElementId();
+            mLastUpdated = fragment.getLastUpdated();
+            mEntry = entry;
+        }
+
+        @Override
+        public ParsedReportTable inBackground() {
+            ReportTableCache.Entry entry = mEntry != null ? mEntry :
+                    mCache.get(mDashboardElementId, mLastUpdated);
+            if (entry == null) {
+                return null;
+            }
+
+            try {
+                InputStream inputStream = mCache.open(entry);
+                try {
+                    return new ParsedReportTable(entry, ReportTable.fromJson(inputStream));
+                } finally {
+                    inputStream.close();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // JsonReader reports unexpected structure with IllegalStateException
+                Log.w(TAG, "Failed to parse report table " + mDashboardElementId, e);
+                return new ParsedReportTable(entry, null);
+            }
+        }
+
+        @Override
+        public void onFinish(ParsedReportTable result) {
+            if (mFragmentRef.get() != null) {
+                mFragmentRef.get().onTableRead(result, mEntry == null);
+            }
+        }
+    }
+
+    static class GetReportTableJob extends ReportTableJob {
+        static final int JOB_ID = 4573454;
+
+        final WeakReference<ReportTableFragment> mFragmentRef;
+
+        public GetReportTableJob(ReportTableFragment fragment, ReportTableCache.Entry cachedEntry) {
+            super(JOB_ID, fragment.mCache, FORMAT, fragment.getDashboardElementId(),
+                    fragment.getLastUpdated(), cachedEntry);
+            mFragmentRef = new WeakReference<>(fragment);
+        }
+
+        @Override
+        public void onFinish(ResponseHolder<ReportTableCache.Entry> result) {
+            if (mFragmentRef.get() != null) {
+                mFragmentRef.get().onDataDownloaded(result);
+            }
+        }
+    }
+}
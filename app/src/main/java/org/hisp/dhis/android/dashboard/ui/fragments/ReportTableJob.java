@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.ui.fragments;
+
+import android.util.Log;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import org.hisp.dhis.android.dashboard.job.Job;
+import org.hisp.dhis.android.dashboard.utils.ReportTable;
+import org.hisp.dhis.android.dashboard.utils.ReportTableCache;
+import org.hisp.dhis.android.sdk.core.network.RepositoryManager;
+import org.hisp.dhis.android.sdk.core.persistence.models.common.meta.ResponseHolder;
+import org.joda.time.DateTime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams report table in given format from server into cache, without
+ * holding it in memory. When cached copy is already shown to user, it is
+ * revalidated by conditional request instead and failures are not reported.
+ */
+abstract class ReportTableJob extends Job<ResponseHolder<ReportTableCache.Entry>> {
+    static final String TAG = ReportTableJob.class.getSimpleName();
+    static final long TIMEOUT_SECONDS = 90;
+
+    final ReportTableCache mCache;
+    final String mFormat;
+    final String mDashboardElementId;
+    final DateTime mLastUpdated;
+
+    /* entry which is already shown to user, can be null */
+    final ReportTableCache.Entry mCachedEntry;
+
+    /* request in flight, aborted when job is cancelled */
+    private volatile Call mCall;
+
+    ReportTableJob(int jobId, ReportTableCache cache, String format, String dashboardElementId,
+                   DateTime lastUpdated, ReportTableCache.Entry cachedEntry) {
+        // when cached copy is shown, revalidation is not urgent
+        super(jobId, Type.NETWORK, cachedEntry == null ? Priority.HIGH : Priority.NORMAL);
+        setTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        mCache = cache;
+        mFormat = format;
+        mDashboardElementId = dashboardElementId;
+        mLastUpdated = lastUpdated;
+        mCachedEntry = cachedEntry;
+    }
+
+    @Override
+    public ResponseHolder<ReportTableCache.Entry> inBackground() {
+        if (mCachedEntry == null) {
+            return fetch();
+        }
+
+        ResponseHolder<ReportTableCache.Entry> responseHolder = new ResponseHolder<>();
+        try {
+            responseHolder.setItem(download(mCachedEntry));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to revalidate report table " + mDashboardElementId, e);
+        }
+        return responseHolder;
+    }
+
+    @Override
+    protected void onCancel() {
+        Call call = mCall;
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Downloads report table which was never cached. Item of returned
+     * holder is null, if table cannot be downloaded.
+     */
+    ResponseHolder<ReportTableCache.Entry> fetch() {
+        ResponseHolder<ReportTableCache.Entry> responseHolder = new ResponseHolder<>();
+        try {
+            responseHolder.setItem(download(null));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to download report table " + mDashboardElementId, e);
+        }
+        return responseHolder;
+    }
+
+    /**
+     * Sends request, which is conditional if cached entry is given.
+     *
+     * @return new entry or null, if cached entry is still up to date.
+     */
+    ReportTableCache.Entry download(ReportTableCache.Entry cachedEntry) throws IOException {
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(ReportTable.buildUrl(mDashboardElementId, mFormat));
+        if (cachedEntry != null && cachedEntry.getETag() != null) {
+            requestBuilder.header("If-None-Match", cachedEntry.getETag());
+        }
+        if (cachedEntry != null && cachedEntry.getLastModified() != null) {
+            requestBuilder.header("If-Modified-Since", cachedEntry.getLastModified());
+        }
+
+        Call call = RepositoryManager.provideOkHttpClient()
+                .newCall(requestBuilder.build());
+        mCall = call;
+        if (isCancelled()) {
+            call.cancel();
+        }
+        Response response = call.execute();
+
+        if (cachedEntry != null && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            response.body().close();
+
+            // cached copy could belong to previous version of element
+            if (!mCache.contains(mDashboardElementId, mLastUpdated)) {
+                mCache.moveTo(cachedEntry, mDashboardElementId, mLastUpdated);
+            }
+            return null;
+        }
+
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new IOException("Unexpected response code: " + response.code());
+        }
+
+        InputStream content = response.body().byteStream();
+        try {
+            return mCache.put(mDashboardElementId, mLastUpdated, content,
+                    response.header("ETag"), response.header("Last-Modified"));
+        } finally {
+            content.close();
+        }
+    }
+}
@@ -35,11 +35,14 @@ import android.support.v7.widget.Toolbar;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 import com.squareup.otto.Subscribe;
 
+import org.hisp.dhis.android.dashboard.BuildConfig;
 import org.hisp.dhis.android.dashboard.DhisService;
 import org.hisp.dhis.android.dashboard.R;
+import org.hisp.dhis.android.dashboard.job.JobMetrics;
 import org.hisp.dhis.android.dashboard.ui.activities.LauncherActivity;
 import org.hisp.dhis.android.dashboard.ui.events.UiEvent;
 
@@ -52,6 +55,12 @@ public final class SettingsFragment extends BaseFragment {
     @Bind(R.id.toolbar)
     Toolbar mToolbar;
 
+    @Bind(R.id.job_metrics_container)
+    View mJobMetricsContainer;
+
+    @Bind(R.id.job_metrics)
+    TextView mJobMetrics;
+
     @Nullable
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -72,6 +81,26 @@ public final class SettingsFragment extends BaseFragment {
         });
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+
+        if (BuildConfig.DEBUG) {
+            mJobMetricsContainer.setVisibility(View.VISIBLE);
+            mJobMetrics.setText(buildJobMetricsReport());
+        }
+    }
+
+    private static String buildJobMetricsReport() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Running jobs: ").append(JobMetrics.getRunningJobsCount())
+                .append(" (max ").append(JobMetrics.getMaxRunningJobsCount()).append(")\n\n");
+        for (JobMetrics.Snapshot snapshot : JobMetrics.getSnapshot()) {
+            builder.append(snapshot).append("\n\n");
+        }
+        return builder.toString();
+    }
+
     @OnClick(R.id.delete_and_log_out_button)
     @SuppressWarnings("unused")
     public void onClick() {
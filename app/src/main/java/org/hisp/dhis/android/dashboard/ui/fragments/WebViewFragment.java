@@ -25,36 +25,41 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-
 package org.hisp.dhis.android.dashboard.ui.fragments;
 
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
+import android.webkit.WebViewClient;
 
 import org.hisp.dhis.android.dashboard.DhisApplication;
 import org.hisp.dhis.android.dashboard.R;
 import org.hisp.dhis.android.dashboard.job.Job;
 import org.hisp.dhis.android.dashboard.job.JobExecutor;
-import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.dashboard.utils.ReportTable;
+import org.hisp.dhis.android.dashboard.utils.ReportTableCache;
 import org.hisp.dhis.android.sdk.core.network.APIException;
 import org.hisp.dhis.android.sdk.core.persistence.models.common.meta.ResponseHolder;
+import org.joda.time.DateTime;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.ref.WeakReference;
 
 import butterknife.Bind;
 import butterknife.ButterKnife;
-import retrofit.mime.TypedInput;
 
 import static android.text.TextUtils.isEmpty;
 
 public class WebViewFragment extends BaseFragment {
+    private static final String TAG = WebViewFragment.class.getSimpleName();
     private static final String DASHBOARD_ELEMENT_ID = "arg:dashboardElementId";
+    private static final String LAST_UPDATED = "arg:lastUpdated";
+    private static final String FORMAT = "html";
 
     @Bind(R.id.web_view_content)
     WebView mWebView;
@@ -62,9 +67,20 @@ public class WebViewFragment extends BaseFragment {
     @Bind(R.id.container_layout_progress_bar)
     View mProgressBarContainer;
 
-    public static WebViewFragment newInstance(String id) {
+    ReportTableCache mCache;
+
+    /* entry which is currently shown in web view. It is read by
+    web view from its own thread, hence it has to be volatile */
+    volatile ReportTableCache.Entry mEntry;
+
+    /**
+     * @param id          UID of report table.
+     * @param lastUpdated last time report table was updated, can be null.
+     */
+    public static WebViewFragment newInstance(String id, DateTime lastUpdated) {
         Bundle args = new Bundle();
         args.putString(DASHBOARD_ELEMENT_ID, id);
+        args.putLong(LAST_UPDATED, lastUpdated != null ? lastUpdated.getMillis() : 0);
 
         WebViewFragment fragment = new WebViewFragment();
         fragment.setArguments(args);
@@ -80,20 +96,53 @@ public class WebViewFragment extends BaseFragment {
     public void onViewCreated(View view, Bundle savedInstanceState) {
         ButterKnife.bind(this, view);
 
+        mCache = ReportTableCache.getInstance(getActivity(), FORMAT);
         mWebView.getSettings().setBuiltInZoomControls(true);
         if (getArguments() != null && !isEmpty(getArguments()
                 .getString(DASHBOARD_ELEMENT_ID))) {
-            JobExecutor.enqueueJob(new GetReportTableJob(this, getArguments()
-                    .getString(DASHBOARD_ELEMENT_ID)));
+            mWebView.setWebViewClient(new CachedReportTableClient(
+                    ReportTable.buildUrl(getDashboardElementId(), FORMAT)));
+
+            // cached copy is shown first and revalidated afterwards
+            JobExecutor.enqueueJob(new GetCachedReportTableJob(this));
         }
     }
 
-    public void onDataDownloaded(ResponseHolder<String> data) {
-        mProgressBarContainer.setVisibility(View.GONE);
+    @Override
+    public void onDestroyView() {
+        // there is no one to show report table to
+        JobExecutor.cancel(GetCachedReportTableJob.JOB_ID);
+        JobExecutor.cancel(GetReportTableJob.JOB_ID);
+        super.onDestroyView();
+    }
+
+    String getDashboardElementId() {
+        return getArguments().getString(DASHBOARD_ELEMENT_ID);
+    }
+
+    DateTime getLastUpdated() {
+        long lastUpdated = getArguments().getLong(LAST_UPDATED);
+        return lastUpdated != 0 ? new DateTime(lastUpdated) : null;
+    }
+
+    public void onCacheRead(ReportTableCache.Entry entry) {
+        if (entry != null) {
+            showEntry(entry);
+        }
+
+        JobExecutor.enqueueJob(new GetReportTableJob(this, entry));
+    }
 
+    public void onDataDownloaded(ResponseHolder<ReportTableCache.Entry> data) {
         if (data.getApiException() == null) {
-            mWebView.loadData(data.getItem(), "text/html", "UTF-8");
+            // item is null when cached copy is still up to date
+            if (data.getItem() != null && !data.getItem().hasSameContent(mEntry)) {
+                showEntry(data.getItem());
+            } else if (mEntry == null) {
+                mProgressBarContainer.setVisibility(View.GONE);
+            }
         } else {
+            mProgressBarContainer.setVisibility(View.GONE);
             if (isAdded()) {
                 ((DhisApplication) (getActivity().getApplication()))
                         .showApiExceptionMessage(data.getApiException());
@@ -101,59 +150,102 @@ public class WebViewFragment extends BaseFragment {
         }
     }
 
-    static class GetReportTableJob extends Job<ResponseHolder<String>> {
-        static final int JOB_ID = 4573452;
+    private void showEntry(ReportTableCache.Entry entry) {
+        mEntry = entry;
+        mProgressBarContainer.setVisibility(View.GONE);
+        mWebView.loadUrl(ReportTable.buildUrl(getDashboardElementId(), FORMAT));
+    }
+
+    /* feeds web view with HTML streamed from cache, instead of loading it from network */
+    class CachedReportTableClient extends WebViewClient {
+        final String mReportTableUrl;
+
+        CachedReportTableClient(String reportTableUrl) {
+            mReportTableUrl = reportTableUrl;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public WebResourceResponse shouldInterceptRequest(WebView view, String url) {
+            ReportTableCache.Entry entry = mEntry;
+            if (entry == null || !mReportTableUrl.equals(url)) {
+                return super.shouldInterceptRequest(view, url);
+            }
+
+            try {
+                return new WebResourceResponse("text/html", "UTF-8", mCache.open(entry));
+            } catch (IOException e) {
+                // request cannot go to server, since web view is not authenticated
+                Log.w(TAG, "Failed to open cached report table", e);
+                return new WebResourceResponse("text/html", "UTF-8",
+                        new ByteArrayInputStream(new byte[0]));
+            }
+        }
+    }
+
+    static class GetCachedReportTableJob extends Job<ReportTableCache.Entry> {
+        static final int JOB_ID = 4573451;
 
         final WeakReference<WebViewFragment> mFragmentRef;
+        final ReportTableCache mCache;
         final String mDashboardElementId;
+        final DateTime mLastUpdated;
 
-        public GetReportTableJob(WebViewFragment fragment, String dashboardElementId) {
-            super(JOB_ID);
+        public GetCachedReportTableJob(WebViewFragment fragment) {
+            super(JOB_ID, Type.DISK, Priority.HIGH);
 
             mFragmentRef = new WeakReference<>(fragment);
-            mDashboardElementId = dashboardElementId;
+            mCache = fragment.mCache;
+            mDashboardElementId = fragment.getDashboardElementId();
+            mLastUpdated = fragment.getLastUpdated();
         }
 
-        static String readInputStream(TypedInput in) {
-            StringBuilder builder = new StringBuilder();
-            try {
-                BufferedReader bufferedStream
-                        = new BufferedReader(new InputStreamReader(in.in()));
-                try {
-                    String line;
-                    while ((line = bufferedStream.readLine()) != null) {
-                        builder.append(line);
-                        builder.append('\n');
-                    }
-                    return builder.toString();
-                } finally {
-                    bufferedStream.close();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        @Override
+        public ReportTableCache.Entry inBackground() {
+            return mCache.get(mDashboardElementId, mLastUpdated);
+        }
+
+        @Override
+        public void onFinish(ReportTableCache.Entry result) {
+            if (mFragmentRef.get() != null) {
+                mFragmentRef.get().onCacheRead(result);
             }
-            return builder.toString();
+        }
+    }
+
+    static class GetReportTableJob extends ReportTableJob {
+        static final int JOB_ID = 4573452;
+
+        final WeakReference<WebViewFragment> mFragmentRef;
+
+        public GetReportTableJob(WebViewFragment fragment, ReportTableCache.Entry cachedEntry) {
+            super(JOB_ID, fragment.mCache, FORMAT, fragment.getDashboardElementId(),
+                    fragment.getLastUpdated(), cachedEntry);
+            mFragmentRef = new WeakReference<>(fragment);
         }
 
+        /* streams table into cache like revalidation does, but failures
+        are reported, since there is no cached copy to fall back to */
         @Override
-        public ResponseHolder<String> inBackground() {
-            ResponseHolder<String> responseHolder = new ResponseHolder<>();
+        ResponseHolder<ReportTableCache.Entry> fetch() {
+            ResponseHolder<ReportTableCache.Entry> responseHolder = new ResponseHolder<>();
 
             try {
-                responseHolder.setItem(readInputStream(Dhis2.getServiceApi()
-                        .getReportTableData(mDashboardElementId).getBody()));
-            } catch (APIException exception) {
-                responseHolder.setApiException(exception);
+                responseHolder.setItem(download(null));
+            } catch (IOException exception) {
+                // failed stream is reported as network error, like failed request
+                responseHolder.setApiException(APIException.networkError(
+                        ReportTable.buildUrl(mDashboardElementId, FORMAT), exception));
             }
 
             return responseHolder;
         }
 
         @Override
-        public void onFinish(ResponseHolder<String> result) {
+        public void onFinish(ResponseHolder<ReportTableCache.Entry> result) {
             if (mFragmentRef.get() != null) {
                 mFragmentRef.get().onDataDownloaded(result);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -130,7 +130,7 @@ public class DashboardEmptyFragment extends BaseFragment implements View.OnClick
     }
 
     private void syncDashboards() {
-        DhisService.getInstance().syncDashboardsAndContent();
+        DhisService.getInstance().syncDashboardsAndContent(getActivity(), -1);
         mProgressBar.setVisibility(View.VISIBLE);
     }
 
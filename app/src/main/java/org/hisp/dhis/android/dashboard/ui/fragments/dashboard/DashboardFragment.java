@@ -41,6 +41,8 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
+import com.squareup.otto.Subscribe;
+
 import org.hisp.dhis.android.dashboard.DhisService;
 import org.hisp.dhis.android.dashboard.R;
 import org.hisp.dhis.android.dashboard.ui.activities.DashboardElementDetailActivity;
@@ -49,10 +51,14 @@ import org.hisp.dhis.android.dashboard.ui.events.UiEvent;
 import org.hisp.dhis.android.dashboard.ui.fragments.BaseFragment;
 import org.hisp.dhis.android.dashboard.ui.fragments.interpretation.InterpretationCreateFragment;
 import org.hisp.dhis.android.dashboard.ui.views.GridDividerDecoration;
+import org.hisp.dhis.android.dashboard.utils.ChangeVersions;
+import org.hisp.dhis.android.dashboard.utils.ChartImagePrefetcher;
+import org.hisp.dhis.android.dashboard.utils.DashboardItems;
 import org.hisp.dhis.android.dashboard.utils.EventBusProvider;
+import org.hisp.dhis.android.dashboard.utils.ReportTablePreviews;
+import org.hisp.dhis.android.dashboard.utils.ThrottledDbLoader;
+import org.hisp.dhis.android.dashboard.utils.VersionedQuery;
 import org.hisp.dhis.android.sdk.core.api.Dhis2;
-import org.hisp.dhis.android.sdk.core.persistence.loaders.DbLoader;
-import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
 import org.hisp.dhis.android.sdk.models.common.Access;
 import org.hisp.dhis.android.sdk.models.dashboard.Dashboard;
@@ -75,10 +81,15 @@ public class DashboardFragment extends BaseFragment
     private static final String MANAGE = "arg:manage";
     private static final String EXTERNALIZE = "arg:externalize";
 
+    /* number of rows below visible window, images of which are prefetched */
+    private static final int PREFETCH_ROWS = 2;
+
     RecyclerView mRecyclerView;
 
     DashboardItemAdapter mAdapter;
 
+    ChartImagePrefetcher mPrefetcher;
+
     public static DashboardFragment newInstance(Dashboard dashboard) {
         DashboardFragment fragment = new DashboardFragment();
         Access access = dashboard.getAccess();
@@ -138,6 +149,53 @@ public class DashboardFragment extends BaseFragment
         mRecyclerView.addItemDecoration(new GridDividerDecoration(getActivity()
                 .getApplicationContext()));
         mRecyclerView.setAdapter(mAdapter);
+
+        mPrefetcher = new ChartImagePrefetcher(getActivity());
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                prefetchOffScreenItems();
+            }
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        mPrefetcher.cancel();
+        super.onDestroyView();
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+
+        // user has moved to another dashboard
+        if (!isVisibleToUser && mPrefetcher != null) {
+            mPrefetcher.cancel();
+        }
+    }
+
+    /* warms up image cache for rows which are just below visible window */
+    void prefetchOffScreenItems() {
+        if (mRecyclerView == null || !getUserVisibleHint()) {
+            return;
+        }
+
+        GridLayoutManager layoutManager = (GridLayoutManager) mRecyclerView.getLayoutManager();
+        int lastVisiblePosition = layoutManager.findLastVisibleItemPosition();
+        if (lastVisiblePosition == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        // each row contains at most span count items
+        int lastPrefetchPosition = Math.min(mAdapter.getItemCount() - 1,
+                lastVisiblePosition + PREFETCH_ROWS * layoutManager.getSpanCount());
+        List<String> imageUrls = new ArrayList<>();
+        for (int position = lastVisiblePosition + 1; position <= lastPrefetchPosition; position++) {
+            imageUrls.add(mAdapter.getImageUrl(position));
+        }
+        mPrefetcher.prefetch(imageUrls);
     }
 
     @Override
@@ -157,7 +215,7 @@ public class DashboardFragment extends BaseFragment
             List<TrackedTable> trackedTables = Arrays.asList(
                     new TrackedTable(DashboardItem.class),
                     new TrackedTable(DashboardElement.class));
-            return new DbLoader<>(getActivity().getApplicationContext(),
+            return new ThrottledDbLoader<>(getActivity().getApplicationContext(),
                     trackedTables, new ItemsQuery(args.getLong(DASHBOARD_ID)));
         }
         return null;
@@ -167,7 +225,20 @@ public class DashboardFragment extends BaseFragment
     public void onLoadFinished(Loader<List<DashboardItem>> loader,
                                List<DashboardItem> dashboardItems) {
         if (loader.getId() == LOADER_ID) {
-            mAdapter.swapData(dashboardItems);
+            mAdapter.swapData(dashboardItems, new Runnable() {
+
+                @Override
+                public void run() {
+                    // visible window is known only after layout pass
+                    mRecyclerView.post(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            prefetchOffScreenItems();
+                        }
+                    });
+                }
+            });
         }
     }
 
@@ -201,6 +272,7 @@ public class DashboardFragment extends BaseFragment
     public void onContentDeleteClick(DashboardElement element) {
         if (element != null) {
             Dhis2.dashboardElements().remove(element);
+            ChangeVersions.notifyChanged(Dashboard.class, getArguments().getLong(DASHBOARD_ID));
             DhisService.getInstance().syncDashboards();
             EventBusProvider.post(new UiEvent(UiEvent.UiEventType.SYNC_DASHBOARDS));
         }
@@ -210,6 +282,7 @@ public class DashboardFragment extends BaseFragment
     public void onItemDeleteClick(DashboardItem item) {
         if (item != null) {
             Dhis2.dashboardItems().remove(item);
+            ChangeVersions.notifyChanged(Dashboard.class, getArguments().getLong(DASHBOARD_ID));
             DhisService.getInstance().syncDashboards();
             EventBusProvider.post(new UiEvent(UiEvent.UiEventType.SYNC_DASHBOARDS));
         }
@@ -222,28 +295,44 @@ public class DashboardFragment extends BaseFragment
                 .show(getChildFragmentManager());
     }
 
-    private static class ItemsQuery implements Query<List<DashboardItem>> {
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void onUiEventReceived(UiEvent uiEvent) {
+        if (uiEvent.getEventType() == UiEvent.UiEventType.REPORT_TABLE_PREVIEWS_UPDATED) {
+            mAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /* tables are shared by all dashboards, so items are
+    queried again only when this dashboard has changed */
+    private static class ItemsQuery extends VersionedQuery<List<DashboardItem>> {
         private final long mDashboardId;
 
         public ItemsQuery(long dashboardId) {
+            super(Dashboard.class, dashboardId);
             mDashboardId = dashboardId;
         }
 
         @Override
-        public List<DashboardItem> query(Context context) {
+        protected List<DashboardItem> querySlice(Context context) {
             Dashboard dashboard = new Dashboard();
             dashboard.setId(mDashboardId);
 
-            List<DashboardItem> dashboardItems = Dhis2.dashboardItems().list(dashboard);
+            List<DashboardItem> dashboardItems = DashboardItems.listWithElements(dashboard);
             List<DashboardItem> filteredDashboardItems = new ArrayList<>();
             if (dashboardItems != null && !dashboardItems.isEmpty()) {
                 for (DashboardItem dashboardItem : dashboardItems) {
                     if (!DashboardItemContent.TYPE_MESSAGES.equals(dashboardItem.getType()) &&
                             !DashboardItemContent.TYPE_EVENT_REPORT.equals(dashboardItem.getType())) {
-                        List<DashboardElement> dashboardElements = Dhis2
-                                .dashboardElements().list(dashboardItem);
-                        dashboardItem.setDashboardElements(dashboardElements);
                         filteredDashboardItems.add(dashboardItem);
+
+                        // adapter takes previews only from memory
+                        DashboardElement reportTable = dashboardItem.getReportTable();
+                        if (DashboardItemContent.TYPE_REPORT_TABLE.equals(dashboardItem.getType()) &&
+                                reportTable != null) {
+                            ReportTablePreviews.getInstance().load(
+                                    reportTable.getUId(), reportTable.getLastUpdated());
+                        }
                     }
                 }
             }
@@ -53,9 +53,10 @@ import org.hisp.dhis.android.dashboard.ui.adapters.DashboardItemSearchDialogAdap
 import org.hisp.dhis.android.dashboard.ui.adapters.DashboardItemSearchDialogAdapter.OptionAdapterValue;
 import org.hisp.dhis.android.dashboard.ui.events.UiEvent;
 import org.hisp.dhis.android.dashboard.ui.fragments.BaseDialogFragment;
+import org.hisp.dhis.android.dashboard.utils.ChangeVersions;
 import org.hisp.dhis.android.dashboard.utils.EventBusProvider;
+import org.hisp.dhis.android.dashboard.utils.ThrottledDbLoader;
 import org.hisp.dhis.android.sdk.core.api.Dhis2;
-import org.hisp.dhis.android.sdk.core.persistence.loaders.DbLoader;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
 import org.hisp.dhis.android.sdk.models.dashboard.Dashboard;
@@ -135,6 +136,7 @@ public class DashboardItemAddFragment extends BaseDialogFragment
         mResourcesMenu = new PopupMenu(getActivity(), mFilterResources);
         mResourcesMenu.inflate(R.menu.menu_filter_resources);
         mResourcesMenu.setOnMenuItemClickListener(this);
+        mAdapter.setTypes(getTypesToInclude());
     }
 
     @Override
@@ -147,7 +149,7 @@ public class DashboardItemAddFragment extends BaseDialogFragment
             callback = OnTextChanged.Callback.AFTER_TEXT_CHANGED)
     @SuppressWarnings("unused")
     public void afterTextChanged(Editable s) {
-        mAdapter.getFilter().filter(s.toString());
+        mAdapter.filter(s.toString());
     }
 
     @OnClick({R.id.close_dialog_button, R.id.edittext_filter_resources})
@@ -166,6 +168,7 @@ public class DashboardItemAddFragment extends BaseDialogFragment
         OptionAdapterValue adapterValue = mAdapter.getItem(position);
         DashboardItemContent resource = Dhis2.dashboardItemContents().get(adapterValue.id);
         Dhis2.dashboards().addDashboardContent(mDashboard, resource);
+        ChangeVersions.notifyChanged(Dashboard.class, mDashboard.getId());
 
         DhisService.getInstance().syncDashboards();
         EventBusProvider.post(new UiEvent(UiEvent.UiEventType.SYNC_DASHBOARDS));
@@ -180,7 +183,7 @@ public class DashboardItemAddFragment extends BaseDialogFragment
     @Override
     public boolean onMenuItemClick(MenuItem item) {
         item.setChecked(!item.isChecked());
-        queryApiResources();
+        mAdapter.setTypes(getTypesToInclude());
         return false;
     }
 
@@ -188,8 +191,8 @@ public class DashboardItemAddFragment extends BaseDialogFragment
     public Loader<List<OptionAdapterValue>> onCreateLoader(int id, Bundle args) {
         List<TrackedTable> trackedTables = Arrays.asList(
                 new TrackedTable(DashboardItemContent.class));
-        return new DbLoader<>(getActivity().getApplicationContext(),
-                trackedTables, new DbQuery(getTypesToInclude()));
+        return new ThrottledDbLoader<>(getActivity().getApplicationContext(),
+                trackedTables, new DbQuery());
     }
 
     @Override
@@ -251,24 +254,26 @@ public class DashboardItemAddFragment extends BaseDialogFragment
         return mResourcesMenu.getMenu().findItem(id).isChecked();
     }
 
+    /* loads catalog of all types once, filtering by type is done by adapter. Catalog
+    is read whole, since SDK syncs and queries it only as a whole */
     static class DbQuery implements Query<List<OptionAdapterValue>> {
-        private List<String> mTypes;
-
-        public DbQuery(List<String> types) {
-            mTypes = types;
-        }
+        private static final List<String> ALL_TYPES = Arrays.asList(
+                DashboardItemContent.TYPE_CHART,
+                DashboardItemContent.TYPE_EVENT_CHART,
+                DashboardItemContent.TYPE_MAP,
+                DashboardItemContent.TYPE_REPORT_TABLE,
+                DashboardItemContent.TYPE_EVENT_REPORT,
+                DashboardItemContent.TYPE_USERS,
+                DashboardItemContent.TYPE_REPORTS,
+                DashboardItemContent.TYPE_RESOURCES);
 
         @Override
         public List<OptionAdapterValue> query(Context context) {
-            if (mTypes.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            List<DashboardItemContent> resources = Dhis2.dashboardItemContents().list(mTypes);
+            List<DashboardItemContent> resources = Dhis2.dashboardItemContents().list(ALL_TYPES);
             List<OptionAdapterValue> adapterValues = new ArrayList<>();
             for (DashboardItemContent dashboardItemContent : resources) {
                 adapterValues.add(new OptionAdapterValue(dashboardItemContent.getUId(),
-                        dashboardItemContent.getDisplayName()));
+                        dashboardItemContent.getDisplayName(), dashboardItemContent.getType()));
             }
 
             return adapterValues;
@@ -45,19 +45,26 @@ import com.squareup.otto.Subscribe;
 
 import org.hisp.dhis.android.dashboard.DhisService;
 import org.hisp.dhis.android.dashboard.R;
+import org.hisp.dhis.android.dashboard.job.Job;
+import org.hisp.dhis.android.dashboard.job.JobExecutor;
 import org.hisp.dhis.android.dashboard.job.NetworkJob;
 import org.hisp.dhis.android.dashboard.ui.adapters.DashboardAdapter;
+import org.hisp.dhis.android.dashboard.ui.adapters.DashboardItemAdapter;
 import org.hisp.dhis.android.dashboard.ui.events.UiEvent;
 import org.hisp.dhis.android.dashboard.ui.fragments.BaseFragment;
+import org.hisp.dhis.android.dashboard.utils.ChartImagePrefetcher;
+import org.hisp.dhis.android.dashboard.utils.ThrottledDbLoader;
 import org.hisp.dhis.android.sdk.core.api.Dhis2;
 import org.hisp.dhis.android.sdk.core.network.SessionManager;
-import org.hisp.dhis.android.sdk.core.persistence.loaders.DbLoader;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
 import org.hisp.dhis.android.sdk.core.persistence.preferences.ResourceType;
 import org.hisp.dhis.android.sdk.models.common.Access;
 import org.hisp.dhis.android.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardItem;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -74,6 +81,9 @@ public class DashboardViewPagerFragment extends BaseFragment
     static final String IS_LOADING = "state:isLoading";
     static final int LOADER_ID = 1233432;
 
+    /* number of dashboards on each side of selected one, images of which are prefetched */
+    static final int PREFETCH_DASHBOARDS = 2;
+
     @Bind(R.id.dashboard_tabs)
     TabLayout mTabs;
 
@@ -88,6 +98,8 @@ public class DashboardViewPagerFragment extends BaseFragment
 
     DashboardAdapter mDashboardAdapter;
 
+    ChartImagePrefetcher mPrefetcher;
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup parent, Bundle savedInstanceState) {
         return inflater.inflate(R.layout.fragment_dashboards, parent, false);
@@ -100,6 +112,7 @@ public class DashboardViewPagerFragment extends BaseFragment
         mDashboardAdapter = new DashboardAdapter(getChildFragmentManager());
         mViewPager.setAdapter(mDashboardAdapter);
         mViewPager.addOnPageChangeListener(this);
+        mPrefetcher = new ChartImagePrefetcher(getActivity());
 
         mToolbar.setNavigationIcon(R.mipmap.ic_menu);
         mToolbar.setNavigationOnClickListener(this);
@@ -133,6 +146,12 @@ public class DashboardViewPagerFragment extends BaseFragment
         getLoaderManager().initLoader(LOADER_ID, savedInstanceState, this);
     }
 
+    @Override
+    public void onDestroyView() {
+        cancelPrefetch();
+        super.onDestroyView();
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         outState.putBoolean(IS_LOADING, mProgressBar
@@ -145,7 +164,7 @@ public class DashboardViewPagerFragment extends BaseFragment
         if (id == LOADER_ID && isAdded()) {
             List<TrackedTable> trackedTables = Arrays.asList(
                     new TrackedTable(Dashboard.class));
-            return new DbLoader<>(getActivity().getApplicationContext(),
+            return new ThrottledDbLoader<>(getActivity().getApplicationContext(),
                     trackedTables, new DashboardQuery());
         }
         return null;
@@ -185,6 +204,8 @@ public class DashboardViewPagerFragment extends BaseFragment
                 .setVisible(dashboardAccess.isUpdate());
         menu.findItem(R.id.manage_dashboard)
                 .setVisible(dashboardAccess.isUpdate());
+
+        prefetchAdjacentDashboards(position);
     }
 
     @Override
@@ -212,7 +233,36 @@ public class DashboardViewPagerFragment extends BaseFragment
 
         if (dashboards != null && !dashboards.isEmpty()) {
             mTabs.setupWithViewPager(mViewPager);
+            prefetchAdjacentDashboards(mViewPager.getCurrentItem());
+        }
+    }
+
+    /* warms up image cache for dashboards which user is likely to swipe to */
+    private void prefetchAdjacentDashboards(int position) {
+        cancelPrefetch();
+
+        List<Dashboard> adjacentDashboards = new ArrayList<>();
+        for (int distance = 1; distance <= PREFETCH_DASHBOARDS; distance++) {
+            if (position + distance < mDashboardAdapter.getCount()) {
+                adjacentDashboards.add(mDashboardAdapter.getDashboard(position + distance));
+            }
+            if (position - distance >= 0) {
+                adjacentDashboards.add(mDashboardAdapter.getDashboard(position - distance));
+            }
         }
+
+        if (!adjacentDashboards.isEmpty()) {
+            JobExecutor.enqueueJob(new PrefetchDashboardsJob(this, adjacentDashboards));
+        }
+    }
+
+    private void cancelPrefetch() {
+        JobExecutor.cancel(PrefetchDashboardsJob.JOB_ID);
+        mPrefetcher.cancel();
+    }
+
+    void onImageUrlsLoaded(List<String> imageUrls) {
+        mPrefetcher.prefetch(imageUrls);
     }
 
     public boolean onMenuItemClicked(MenuItem item) {
@@ -247,7 +297,10 @@ public class DashboardViewPagerFragment extends BaseFragment
     }
 
     private void syncDashboards() {
-        DhisService.getInstance().syncDashboardsAndContent();
+        Dashboard selectedDashboard = mDashboardAdapter
+                .getDashboard(mViewPager.getCurrentItem());
+        DhisService.getInstance().syncDashboardsAndContent(getActivity(),
+                selectedDashboard != null ? selectedDashboard.getId() : -1);
         mProgressBar.setVisibility(View.VISIBLE);
     }
 
@@ -259,6 +312,47 @@ public class DashboardViewPagerFragment extends BaseFragment
         }
     }
 
+    /* reads URLs to images of given dashboards from database */
+    static class PrefetchDashboardsJob extends Job<List<String>> {
+        static final int JOB_ID = 5623423;
+
+        final WeakReference<DashboardViewPagerFragment> mFragmentRef;
+        final Context mContext;
+        final List<Dashboard> mDashboards;
+        final int mSpanCount;
+
+        public PrefetchDashboardsJob(DashboardViewPagerFragment fragment, List<Dashboard> dashboards) {
+            super(JOB_ID, Type.DISK, Priority.LOW);
+
+            mFragmentRef = new WeakReference<>(fragment);
+            mContext = fragment.getActivity().getApplicationContext();
+            mDashboards = dashboards;
+            mSpanCount = fragment.getResources().getInteger(R.integer.column_nums);
+        }
+
+        @Override
+        public List<String> inBackground() {
+            List<String> imageUrls = new ArrayList<>();
+            for (Dashboard dashboard : mDashboards) {
+                if (isCancelled()) {
+                    break;
+                }
+
+                List<DashboardItem> dashboardItems = Dhis2.dashboardItems().list(dashboard);
+                imageUrls.addAll(DashboardItemAdapter
+                        .getImageUrls(mContext, dashboardItems, mSpanCount));
+            }
+            return imageUrls;
+        }
+
+        @Override
+        public void onFinish(List<String> imageUrls) {
+            if (mFragmentRef.get() != null) {
+                mFragmentRef.get().onImageUrlsLoaded(imageUrls);
+            }
+        }
+    }
+
     private static class DashboardQuery implements Query<List<Dashboard>> {
 
         @Override
@@ -50,8 +50,8 @@ import org.hisp.dhis.android.dashboard.R;
 import org.hisp.dhis.android.dashboard.ui.adapters.InterpretationCommentsAdapter;
 import org.hisp.dhis.android.dashboard.ui.adapters.InterpretationCommentsAdapter.OnCommentClickListener;
 import org.hisp.dhis.android.dashboard.ui.fragments.BaseFragment;
+import org.hisp.dhis.android.dashboard.utils.ThrottledDbLoader;
 import org.hisp.dhis.android.sdk.core.api.Dhis2;
-import org.hisp.dhis.android.sdk.core.persistence.loaders.DbLoader;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
 import org.hisp.dhis.android.sdk.models.common.meta.DbAction;
@@ -161,7 +161,7 @@ public class InterpretationCommentsFragment extends BaseFragment
         if (LOADER_ID == id) {
             List<TrackedTable> trackedTables = Arrays.asList(
                     new TrackedTable(InterpretationComment.class, DbAction.UPDATE));
-            return new DbLoader<>(getActivity().getApplicationContext(),
+            return new ThrottledDbLoader<>(getActivity().getApplicationContext(),
                     trackedTables, new CommentsQuery(args.getLong(INTERPRETATION_ID)));
         }
         return null;
@@ -171,9 +171,17 @@ public class InterpretationCommentsFragment extends BaseFragment
     public void onLoadFinished(Loader<List<InterpretationComment>> loader,
                                List<InterpretationComment> data) {
         if (LOADER_ID == loader.getId()) {
-            mAdapter.swapData(data);
-            mRecyclerView.smoothScrollToPosition(
-                    mAdapter.getItemCount() > 0 ? mAdapter.getItemCount() - 1 : 0);
+            // adapter switches to new data once difference is computed
+            mAdapter.swapData(data, new Runnable() {
+
+                @Override
+                public void run() {
+                    if (mRecyclerView != null) {
+                        mRecyclerView.smoothScrollToPosition(
+                                mAdapter.getItemCount() > 0 ? mAdapter.getItemCount() - 1 : 0);
+                    }
+                }
+            });
         }
     }
 
@@ -12,7 +12,7 @@ import android.view.ViewGroup;
 
 import org.hisp.dhis.android.dashboard.R;
 import org.hisp.dhis.android.dashboard.ui.fragments.BaseFragment;
-import org.hisp.dhis.android.sdk.core.persistence.loaders.DbLoader;
+import org.hisp.dhis.android.dashboard.utils.ThrottledDbLoader;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
 import org.hisp.dhis.android.sdk.models.common.meta.DbAction;
@@ -46,7 +46,7 @@ public class InterpretationContainerFragment extends BaseFragment
                 DbAction.INSERT, DbAction.DELETE);
         List<TrackedTable> trackedTables = Arrays.asList(
                 new TrackedTable(Interpretation.class, actionsToTrack));
-        return new DbLoader<>(getActivity().getApplicationContext(),
+        return new ThrottledDbLoader<>(getActivity().getApplicationContext(),
                 trackedTables, new InterpretationsQuery());
     }
 
@@ -93,7 +93,7 @@ public class InterpretationEmptyFragment extends BaseFragment implements View.On
     }
 
     private void syncInterpretations() {
-        DhisService.getInstance().syncInterpretations();
+        DhisService.getInstance().refreshInterpretations();
         mProgressBar.setVisibility(View.VISIBLE);
     }
 
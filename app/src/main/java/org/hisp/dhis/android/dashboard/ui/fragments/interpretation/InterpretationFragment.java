@@ -53,9 +53,9 @@ import org.hisp.dhis.android.dashboard.ui.adapters.InterpretationAdapter;
 import org.hisp.dhis.android.dashboard.ui.events.UiEvent;
 import org.hisp.dhis.android.dashboard.ui.fragments.BaseFragment;
 import org.hisp.dhis.android.dashboard.ui.views.GridDividerDecoration;
+import org.hisp.dhis.android.dashboard.utils.ThrottledDbLoader;
 import org.hisp.dhis.android.sdk.core.api.Dhis2;
 import org.hisp.dhis.android.sdk.core.network.SessionManager;
-import org.hisp.dhis.android.sdk.core.persistence.loaders.DbLoader;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
 import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
 import org.hisp.dhis.android.sdk.core.persistence.preferences.ResourceType;
@@ -168,7 +168,7 @@ public final class InterpretationFragment extends BaseFragment
         List<TrackedTable> trackedTables = Arrays.asList(
                 new TrackedTable(Interpretation.class, DbAction.UPDATE),
                 new TrackedTable(InterpretationComment.class, DbAction.INSERT));
-        return new DbLoader<>(getActivity().getApplicationContext(),
+        return new ThrottledDbLoader<>(getActivity().getApplicationContext(),
                 trackedTables, new InterpretationsQuery());
     }
 
@@ -281,7 +281,7 @@ public final class InterpretationFragment extends BaseFragment
     }
 
     private void syncInterpretations() {
-        DhisService.getInstance().syncInterpretations();
+        DhisService.getInstance().refreshInterpretations();
         mProgressBar.setVisibility(View.VISIBLE);
     }
 
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.ui.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.OverScroller;
+
+import org.hisp.dhis.android.dashboard.utils.ReportTable;
+
+import java.util.Arrays;
+
+/**
+ * Renders report table directly on canvas. Only cells which intersect
+ * visible area are drawn, so cost of a frame depends on size of view,
+ * not on size of table. Header row and leading dimension columns are
+ * frozen and stay in place while the rest of table is scrolled in both
+ * directions.
+ */
+public class TableView extends View {
+    /* column widths are measured on first rows only, long values are clipped */
+    private static final int MEASURED_ROWS = 100;
+
+    private static final float TEXT_SIZE_SP = 14;
+    private static final float CELL_PADDING_DP = 8;
+    private static final float ROW_HEIGHT_DP = 40;
+    private static final float MIN_COLUMN_WIDTH_DP = 48;
+    private static final float MAX_COLUMN_WIDTH_DP = 240;
+
+    private static final int HEADER_BACKGROUND_COLOR = 0xFFEEEEEE;
+    private static final int GRID_COLOR = 0xFFE0E0E0;
+    private static final int TEXT_COLOR = 0xDE000000;
+
+    private final Paint mTextPaint;
+    private final Paint mHeaderTextPaint;
+    private final Paint mHeaderBackgroundPaint;
+    private final Paint mGridPaint;
+
+    private final int mCellPadding;
+    private final int mRowHeight;
+    private final int mMinColumnWidth;
+    private final int mMaxColumnWidth;
+    private final float mTextBaseline;
+
+    private final GestureDetector mGestureDetector;
+    private final OverScroller mScroller;
+
+    private ReportTable mTable;
+
+    /* x coordinate of left edge of each column within table,
+    last element is width of table */
+    private int[] mColumnOffsets = new int[]{0};
+
+    /* number of leading columns which are not scrolled horizontally */
+    private int mFrozenColumnCount;
+
+    private int mOffsetX;
+    private int mOffsetY;
+
+    private boolean mScrollEnabled = true;
+
+    public TableView(Context context) {
+        this(context, null);
+    }
+
+    public TableView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public TableView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setColor(TEXT_COLOR);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+
+        mHeaderTextPaint = new Paint(mTextPaint);
+        mHeaderTextPaint.setTypeface(Typeface.DEFAULT_BOLD);
+
+        mHeaderBackgroundPaint = new Paint();
+        mHeaderBackgroundPaint.setColor(HEADER_BACKGROUND_COLOR);
+
+        mGridPaint = new Paint();
+        mGridPaint.setColor(GRID_COLOR);
+
+        mCellPadding = dpToPx(CELL_PADDING_DP);
+        mRowHeight = dpToPx(ROW_HEIGHT_DP);
+        mMinColumnWidth = dpToPx(MIN_COLUMN_WIDTH_DP);
+        mMaxColumnWidth = dpToPx(MAX_COLUMN_WIDTH_DP);
+
+        // vertically centered text
+        Paint.FontMetrics fontMetrics = mTextPaint.getFontMetrics();
+        mTextBaseline = (mRowHeight - fontMetrics.ascent - fontMetrics.descent) / 2;
+
+        mScroller = new OverScroller(context);
+        mGestureDetector = new GestureDetector(context, new GestureListener());
+
+        if (getBackground() == null) {
+            setBackgroundColor(Color.WHITE);
+        }
+    }
+
+    public void setTable(ReportTable table) {
+        mTable = table;
+        mColumnOffsets = measureColumns(table);
+        mScroller.forceFinished(true);
+        mOffsetX = 0;
+        mOffsetY = 0;
+
+        updateFrozenColumnCount();
+        invalidate();
+    }
+
+    public ReportTable getTable() {
+        return mTable;
+    }
+
+    /* when scrolling is disabled, touches go to parent, which makes view usable as preview */
+    public void setScrollEnabled(boolean scrollEnabled) {
+        mScrollEnabled = scrollEnabled;
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+
+        updateFrozenColumnCount();
+        scrollTableTo(mOffsetX, mOffsetY);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!mScrollEnabled) {
+            return super.onTouchEvent(event);
+        }
+        return mGestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    public void computeScroll() {
+        if (mScroller.computeScrollOffset()) {
+            scrollTableTo(mScroller.getCurrX(), mScroller.getCurrY());
+            ViewCompat.postInvalidateOnAnimation(this);
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (mTable == null) {
+            return;
+        }
+
+        int frozenWidth = mColumnOffsets[mFrozenColumnCount];
+        int columnCount = mTable.getColumnCount();
+        int rowCount = mTable.getRowCount();
+
+        // range of scrollable columns and rows which are visible
+        int firstColumn = Math.max(mFrozenColumnCount, findColumn(frozenWidth + mOffsetX));
+        int lastColumn = Math.min(columnCount - 1, findColumn(mOffsetX + getWidth()));
+        int firstRow = mOffsetY / mRowHeight;
+        int lastRow = Math.min(rowCount - 1, (mOffsetY + getHeight() - mRowHeight) / mRowHeight);
+
+        // scrollable cells
+        canvas.save();
+        canvas.clipRect(frozenWidth, mRowHeight, getWidth(), getHeight());
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                drawCell(canvas, mTable.getValue(row, column), column,
+                        mColumnOffsets[column] - mOffsetX, getRowTop(row), false);
+            }
+        }
+        canvas.restore();
+
+        // frozen columns, scrolled only vertically
+        canvas.save();
+        canvas.clipRect(0, mRowHeight, frozenWidth, getHeight());
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = 0; column < mFrozenColumnCount; column++) {
+                drawCell(canvas, mTable.getValue(row, column), column,
+                        mColumnOffsets[column], getRowTop(row), false);
+            }
+        }
+        canvas.restore();
+
+        // header row, scrolled only horizontally
+        canvas.save();
+        canvas.clipRect(frozenWidth, 0, getWidth(), mRowHeight);
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            drawCell(canvas, mTable.getHeader(column), column,
+                    mColumnOffsets[column] - mOffsetX, 0, true);
+        }
+        canvas.restore();
+
+        // headers of frozen columns are never scrolled
+        for (int column = 0; column < mFrozenColumnCount; column++) {
+            drawCell(canvas, mTable.getHeader(column), column,
+                    mColumnOffsets[column], 0, true);
+        }
+    }
+
+    private void drawCell(Canvas canvas, String text, int column,
+                          int left, int top, boolean isHeader) {
+        int right = left + mColumnOffsets[column + 1] - mColumnOffsets[column];
+        int bottom = top + mRowHeight;
+
+        if (isHeader) {
+            canvas.drawRect(left, top, right, bottom, mHeaderBackgroundPaint);
+        }
+        canvas.drawLine(left, bottom - 1, right, bottom - 1, mGridPaint);
+        canvas.drawLine(right - 1, top, right - 1, bottom, mGridPaint);
+
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+
+        Paint paint = isHeader ? mHeaderTextPaint : mTextPaint;
+
+        canvas.save();
+        canvas.clipRect(left + mCellPadding, top, right - mCellPadding, bottom);
+        if (isHeader || mTable.isDimensionColumn(column)) {
+            canvas.drawText(text, left + mCellPadding, top + mTextBaseline, paint);
+        } else {
+            // values are aligned to the right, so that digits line up
+            float textWidth = paint.measureText(text);
+            canvas.drawText(text, right - mCellPadding - textWidth, top + mTextBaseline, paint);
+        }
+        canvas.restore();
+    }
+
+    private int getRowTop(int row) {
+        // first row goes below header
+        return mRowHeight + row * mRowHeight - mOffsetY;
+    }
+
+    /* returns index of column which contains given x coordinate of table */
+    private int findColumn(int x) {
+        int index = Arrays.binarySearch(mColumnOffsets, x);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private int[] measureColumns(ReportTable table) {
+        if (table == null) {
+            return new int[]{0};
+        }
+
+        int columnCount = table.getColumnCount();
+        int measuredRows = Math.min(MEASURED_ROWS, table.getRowCount());
+
+        int[] columnOffsets = new int[columnCount + 1];
+        for (int column = 0; column < columnCount; column++) {
+            float width = mHeaderTextPaint.measureText(table.getHeader(column));
+            for (int row = 0; row < measuredRows; row++) {
+                width = Math.max(width, mTextPaint.measureText(table.getValue(row, column)));
+            }
+
+            int columnWidth = Math.max(mMinColumnWidth, Math.min(mMaxColumnWidth,
+                    (int) Math.ceil(width) + 2 * mCellPadding));
+            columnOffsets[column + 1] = columnOffsets[column] + columnWidth;
+        }
+        return columnOffsets;
+    }
+
+    /* leading dimension columns are frozen, as long as they take at most half of view */
+    private void updateFrozenColumnCount() {
+        mFrozenColumnCount = 0;
+        if (mTable == null) {
+            return;
+        }
+
+        int columnCount = mTable.getColumnCount();
+        while (mFrozenColumnCount < columnCount - 1 &&
+                mTable.isDimensionColumn(mFrozenColumnCount) &&
+                mColumnOffsets[mFrozenColumnCount + 1] <= getWidth() / 2) {
+            mFrozenColumnCount++;
+        }
+    }
+
+    private int getMaxOffsetX() {
+        return Math.max(0, mColumnOffsets[mColumnOffsets.length - 1] - getWidth());
+    }
+
+    private int getMaxOffsetY() {
+        int rowCount = mTable != null ? mTable.getRowCount() : 0;
+        return Math.max(0, (rowCount + 1) * mRowHeight - getHeight());
+    }
+
+    private void scrollTableTo(int x, int y) {
+        int offsetX = Math.max(0, Math.min(getMaxOffsetX(), x));
+        int offsetY = Math.max(0, Math.min(getMaxOffsetY(), y));
+        if (offsetX != mOffsetX || offsetY != mOffsetY) {
+            mOffsetX = offsetX;
+            mOffsetY = offsetY;
+            invalidate();
+        }
+    }
+
+    private int dpToPx(float dp) {
+        return Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                dp, getResources().getDisplayMetrics()));
+    }
+
+    private class GestureListener extends GestureDetector.SimpleOnGestureListener {
+
+        @Override
+        public boolean onDown(MotionEvent event) {
+            mScroller.forceFinished(true);
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(MotionEvent first, MotionEvent current,
+                                float distanceX, float distanceY) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+            scrollTableTo(mOffsetX + (int) distanceX, mOffsetY + (int) distanceY);
+            return true;
+        }
+
+        @Override
+        public boolean onFling(MotionEvent first, MotionEvent current,
+                               float velocityX, float velocityY) {
+            mScroller.fling(mOffsetX, mOffsetY, (int) -velocityX, (int) -velocityY,
+                    0, getMaxOffsetX(), 0, getMaxOffsetY());
+            ViewCompat.postInvalidateOnAnimation(TableView.this);
+            return true;
+        }
+    }
+}
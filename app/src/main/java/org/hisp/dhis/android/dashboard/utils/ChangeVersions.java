@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.dashboard.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Versions of data slices, where a slice is everything which belongs to one
+ * parent row (for example, items and elements of one dashboard). Code which
+ * writes to database reports affected parent rows here, so loaders which show
+ * other slices can skip re-querying when their tracked tables change.
+ */
+public final class ChangeVersions {
+    /* guarded by class lock */
+    private static final Map<String, Long> sVersions = new HashMap<>();
+    private static long sCounter;
+
+    private ChangeVersions() {
+        // no instances
+    }
+
+    /**
+     * Reports change of data which belongs to given parent row.
+     */
+    public static synchronized void notifyChanged(Class<?> type, long id) {
+        sVersions.put(getKey(type, id), ++sCounter);
+    }
+
+    /**
+     * Reports change which can affect data of any row of given type.
+     */
+    public static synchronized void notifyChanged(Class<?> type) {
+        sVersions.put(type.getName(), ++sCounter);
+    }
+
+    /**
+     * Returns version of slice, which grows each time slice is reported as changed.
+     */
+    public static synchronized long getVersion(Class<?> type, long id) {
+        return Math.max(getVersion(getKey(type, id)), getVersion(type.getName()));
+    }
+
+    private static long getVersion(String key) {
+        Long version = sVersions.get(key);
+        return version == null ? 0 : version;
+    }
+
+    private static String getKey(Class<?> type, long id) {
+        return type.getName() + ":" + id;
+    }
+}
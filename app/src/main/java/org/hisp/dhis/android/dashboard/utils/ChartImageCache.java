@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.squareup.picasso.NetworkPolicy;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestHandler;
+
+import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.joda.time.DateTime;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Disk cache for chart, map and event chart images. Images are requested
+ * through URIs with custom scheme, which contain element UID, its lastUpdated
+ * and image size. Since Picasso memory cache is keyed by URI as well, both
+ * tiers are invalidated only when sync brings newer lastUpdated. When image
+ * cannot be downloaded, previously cached version of the same chart is served.
+ */
+public final class ChartImageCache extends RequestHandler {
+    private static final String TAG = ChartImageCache.class.getSimpleName();
+    private static final String SCHEME = "dhis-chart";
+    private static final String CACHE_DIRECTORY = "charts";
+    private static final String FILE_EXTENSION = ".png";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final long MAX_CACHE_SIZE = 32 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final String PARAM_LAST_UPDATED = "lastUpdated";
+    private static final String PARAM_WIDTH = "width";
+    private static final String PARAM_HEIGHT = "height";
+
+    private final File mDirectory;
+    private final OkHttpClient mClient;
+
+    public ChartImageCache(Context context, OkHttpClient client) {
+        mDirectory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        mClient = client;
+    }
+
+    /**
+     * Builds URI of chart image. Width should be taken from ChartImageSize,
+     * so that image matches its view and is shared with other views of similar size.
+     *
+     * @param resource    API resource: charts, maps or eventCharts.
+     * @param uid         UID of element.
+     * @param lastUpdated last time element was updated, can be null.
+     */
+    public static String buildUri(String resource, String uid,
+                                  DateTime lastUpdated, int width) {
+        int height = ChartImageSize.getHeight(width);
+        return new Uri.Builder()
+                .scheme(SCHEME)
+                .authority(resource)
+                .appendPath(uid)
+                .appendQueryParameter(PARAM_LAST_UPDATED,
+                        String.valueOf(lastUpdated != null ? lastUpdated.getMillis() : 0))
+                .appendQueryParameter(PARAM_WIDTH, String.valueOf(width))
+                .appendQueryParameter(PARAM_HEIGHT, String.valueOf(height))
+                .build().toString();
+    }
+
+    @Override
+    public boolean canHandleRequest(com.squareup.picasso.Request data) {
+        return data.uri != null && SCHEME.equals(data.uri.getScheme());
+    }
+
+    /**
+     * Downloads image into disk cache, unless it is there already. Image
+     * is not decoded, so this is a cheap way to warm the cache up ahead
+     * of time. Should be called on worker thread.
+     *
+     * @param uri URI built by {@link #buildUri(String, String, DateTime, int)}.
+     */
+    public void prefetch(String uri) throws IOException {
+        Uri imageUri = Uri.parse(uri);
+        String prefix = getPrefix(imageUri);
+        File file = getFile(imageUri, prefix);
+
+        if (!file.exists()) {
+            download(imageUri, prefix, file);
+        }
+    }
+
+    @Override
+    public Result load(com.squareup.picasso.Request request, int networkPolicy) throws IOException {
+        Uri uri = request.uri;
+        String prefix = getPrefix(uri);
+        File file = getFile(uri, prefix);
+
+        if (NetworkPolicy.shouldReadFromDiskCache(networkPolicy) && file.exists()) {
+            touch(file);
+            return new Result(new FileInputStream(file), Picasso.LoadedFrom.DISK);
+        }
+
+        if (!NetworkPolicy.isOfflineOnly(networkPolicy)) {
+            try {
+                download(uri, prefix, file);
+                return new Result(new FileInputStream(file), Picasso.LoadedFrom.NETWORK);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to download chart image, looking for stale copy", e);
+            }
+        }
+
+        File staleFile = findOtherVersion(prefix, file);
+        if (staleFile != null) {
+            return new Result(new FileInputStream(staleFile), Picasso.LoadedFrom.DISK);
+        }
+
+        throw new IOException("Chart image is neither cached, nor available: " + uri);
+    }
+
+    /* all versions of the same chart in the same size share prefix */
+    private static String getPrefix(Uri uri) {
+        return uri.getAuthority() + '_' + uri.getLastPathSegment() + '_' +
+                uri.getQueryParameter(PARAM_WIDTH) + 'x' + uri.getQueryParameter(PARAM_HEIGHT) + '_';
+    }
+
+    private File getFile(Uri uri, String prefix) {
+        return new File(mDirectory, prefix +
+                uri.getQueryParameter(PARAM_LAST_UPDATED) + FILE_EXTENSION);
+    }
+
+    /* downloads image, replacing older versions of the same chart */
+    private void download(Uri uri, String prefix, File file) throws IOException {
+        download(buildUrl(uri.getAuthority(), uri.getLastPathSegment(),
+                uri.getQueryParameter(PARAM_WIDTH), uri.getQueryParameter(PARAM_HEIGHT)), file);
+        deleteOtherVersions(prefix, file);
+        trimToSize();
+    }
+
+    private static String buildUrl(String resource, String uid, String width, String height) {
+        return Dhis2.getServerUrl().newBuilder()
+                .addPathSegment("api").addPathSegment(resource).addPathSegment(uid).addPathSegment("data.png")
+                .addQueryParameter(PARAM_WIDTH, width).addQueryParameter(PARAM_HEIGHT, height)
+                .toString();
+    }
+
+    private void download(String url, File file) throws IOException {
+        Response response = mClient.newCall(new Request.Builder().url(url).build()).execute();
+        if (!response.isSuccessful()) {
+            response.body().close();
+            throw new IOException("Unexpected response code: " + response.code());
+        }
+
+        if (!mDirectory.exists() && !mDirectory.mkdirs() && !mDirectory.exists()) {
+            response.body().close();
+            throw new IOException("Failed to create cache directory");
+        }
+
+        // writing to temporary file first, so concurrent
+        // readers never see partially written image
+        File tempFile = new File(mDirectory, file.getName() + '.' +
+                Thread.currentThread().getId() + TEMP_FILE_EXTENSION);
+        InputStream inputStream = response.body().byteStream();
+        try {
+            OutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Failed to store chart image");
+        }
+    }
+
+    private File findOtherVersion(String prefix, File file) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return null;
+        }
+
+        for (File candidate : files) {
+            if (candidate.getName().startsWith(prefix) &&
+                    candidate.getName().endsWith(FILE_EXTENSION) && !candidate.equals(file)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /* newer version of chart makes older ones useless */
+    private void deleteOtherVersions(String prefix, File file) {
+        File otherVersion;
+        while ((otherVersion = findOtherVersion(prefix, file)) != null) {
+            if (!otherVersion.delete()) {
+                break;
+            }
+        }
+    }
+
+    private static void touch(File file) {
+        // last modified time is used as access time by trimToSize()
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            Log.d(TAG, "Failed to update access time of " + file.getName());
+        }
+    }
+
+    /* evicts least recently used images */
+    private synchronized void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+
+        if (size <= MAX_CACHE_SIZE) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (size <= MAX_CACHE_SIZE) {
+                break;
+            }
+
+            long length = file.length();
+            if (!file.getName().endsWith(TEMP_FILE_EXTENSION) && file.delete()) {
+                size -= length;
+            }
+        }
+    }
+}
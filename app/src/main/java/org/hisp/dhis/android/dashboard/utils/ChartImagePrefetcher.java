@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+
+import com.squareup.picasso.MemoryPolicy;
+import com.squareup.picasso.Picasso;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Warms up image cache with images which are likely to be shown soon.
+ * Requests are issued with low priority, so they never delay images
+ * which are visible on screen. Only disk cache is warmed up: prefetched
+ * bitmaps are kept out of memory cache, so they do not evict images
+ * which are on screen. Should be used only from main thread.
+ */
+public final class ChartImagePrefetcher {
+    private final Picasso mImageLoader;
+
+    /* tag which identifies requests issued by this prefetcher */
+    private final Object mTag = new Object();
+
+    /* URLs requested since last cancellation */
+    private final Set<String> mRequestedUrls = new HashSet<>();
+
+    public ChartImagePrefetcher(Context context) {
+        mImageLoader = PicassoProvider.getInstance(context);
+    }
+
+    public void prefetch(List<String> urls) {
+        if (urls == null) {
+            return;
+        }
+
+        for (String url : urls) {
+            if (url != null && mRequestedUrls.add(url)) {
+                mImageLoader.load(url)
+                        .priority(Picasso.Priority.LOW)
+                        .memoryPolicy(MemoryPolicy.NO_CACHE, MemoryPolicy.NO_STORE)
+                        .tag(mTag)
+                        .fetch();
+            }
+        }
+    }
+
+    /* cancels requests which are still in flight. Images which are
+    shown on screen in meantime are not affected by cancellation */
+    public void cancel() {
+        mImageLoader.cancelTag(mTag);
+        mRequestedUrls.clear();
+    }
+}
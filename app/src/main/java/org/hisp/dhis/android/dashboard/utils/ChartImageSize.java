@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+import android.util.DisplayMetrics;
+
+/**
+ * Chooses dimensions of chart images requested from server. Widths are
+ * quantized to a small ladder, so the same image (and cache entry)
+ * is shared by cards of similar size.
+ */
+public final class ChartImageSize {
+    private static final int[] WIDTH_LADDER = {
+            240, 320, 480, 640, 800, 960, 1280, 1600
+    };
+
+    /* charts are rendered by server with 3:2 aspect ratio */
+    private static final int ASPECT_WIDTH = 3;
+    private static final int ASPECT_HEIGHT = 2;
+
+    /* pixels beyond xhdpi density are not perceptible on
+    server-rendered charts, while they cost a lot of traffic */
+    private static final float MAX_DENSITY = 2.0f;
+
+    private ChartImageSize() {
+        // no instances
+    }
+
+    /**
+     * Returns width of image for card in grid.
+     *
+     * @param spanSize  number of columns card occupies.
+     * @param spanCount number of columns in grid.
+     */
+    public static int getCardWidth(Context context, int spanSize, int spanCount) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        float cardWidth = metrics.widthPixels * spanSize / (float) Math.max(1, spanCount);
+        if (metrics.density > MAX_DENSITY) {
+            cardWidth = cardWidth * MAX_DENSITY / metrics.density;
+        }
+        return quantize((int) cardWidth);
+    }
+
+    /* returns width of image which is shown in full screen and can be zoomed */
+    public static int getFullScreenWidth(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return quantize(Math.max(metrics.widthPixels, metrics.heightPixels));
+    }
+
+    public static int getHeight(int width) {
+        return width * ASPECT_HEIGHT / ASPECT_WIDTH;
+    }
+
+    /* returns the smallest step of the ladder which is not smaller than width */
+    static int quantize(int width) {
+        for (int step : WIDTH_LADDER) {
+            if (step >= width) {
+                return step;
+            }
+        }
+        return WIDTH_LADDER[WIDTH_LADDER.length - 1];
+    }
+}
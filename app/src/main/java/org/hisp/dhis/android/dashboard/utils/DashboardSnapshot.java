@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import org.hisp.dhis.android.sdk.core.api.Dhis2;
+import org.hisp.dhis.android.sdk.models.dashboard.Dashboard;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardElement;
+import org.hisp.dhis.android.sdk.models.dashboard.DashboardItem;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stamps of what dashboard loaders show: ids and lastUpdated of each dashboard,
+ * its items and their elements. Comparing snapshots taken before and after sync
+ * tells which dashboards have to be reloaded, including those where only an
+ * element has changed (for example, chart was renamed) and the dashboard's
+ * own lastUpdated stayed the same.
+ */
+public final class DashboardSnapshot {
+    /* kinds of rows in stamp */
+    private static final long ITEM = 1;
+    private static final long ELEMENT = 2;
+
+    private final Map<Long, List<Long>> mStamps;
+
+    private DashboardSnapshot(Map<Long, List<Long>> stamps) {
+        mStamps = stamps;
+    }
+
+    /* reads all dashboards with their items and elements, should not be called from main thread */
+    public static DashboardSnapshot take() {
+        Builder builder = new Builder();
+        List<Dashboard> dashboards = Dhis2.dashboards().list();
+        if (dashboards == null) {
+            return builder.build();
+        }
+
+        for (Dashboard dashboard : dashboards) {
+            builder.addDashboard(dashboard.getId(), dashboard.getLastUpdated());
+
+            List<DashboardItem> items = DashboardItems.listWithElements(dashboard);
+            if (items == null) {
+                continue;
+            }
+
+            for (DashboardItem item : items) {
+                builder.addItem(item.getId(), item.getLastUpdated());
+
+                List<DashboardElement> elements = item.getDashboardElements();
+                if (elements == null) {
+                    continue;
+                }
+
+                for (DashboardElement element : elements) {
+                    builder.addElement(element.getId(), element.getLastUpdated());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /* returns ids of dashboards which were added, removed or changed in given snapshot */
+    public Set<Long> getChangedDashboards(DashboardSnapshot snapshot) {
+        Set<Long> changedDashboards = new HashSet<>();
+        for (Map.Entry<Long, List<Long>> entry : snapshot.mStamps.entrySet()) {
+            if (!entry.getValue().equals(mStamps.get(entry.getKey()))) {
+                changedDashboards.add(entry.getKey());
+            }
+        }
+
+        for (Long dashboardId : mStamps.keySet()) {
+            if (!snapshot.mStamps.containsKey(dashboardId)) {
+                changedDashboards.add(dashboardId);
+            }
+        }
+        return changedDashboards;
+    }
+
+    /* rows are added in order: dashboard, followed by its items, each followed by its elements */
+    static final class Builder {
+        private final Map<Long, List<Long>> mStamps = new HashMap<>();
+        private List<Long> mStamp;
+
+        Builder addDashboard(long id, DateTime lastUpdated) {
+            mStamp = new ArrayList<>();
+            mStamp.add(getMillis(lastUpdated));
+            mStamps.put(id, mStamp);
+            return this;
+        }
+
+        Builder addItem(long id, DateTime lastUpdated) {
+            return addRow(ITEM, id, lastUpdated);
+        }
+
+        Builder addElement(long id, DateTime lastUpdated) {
+            return addRow(ELEMENT, id, lastUpdated);
+        }
+
+        DashboardSnapshot build() {
+            return new DashboardSnapshot(mStamps);
+        }
+
+        private Builder addRow(long kind, long id, DateTime lastUpdated) {
+            if (mStamp == null) {
+                throw new IllegalStateException("Dashboard must be added first");
+            }
+
+            mStamp.add(kind);
+            mStamp.add(id);
+            mStamp.add(getMillis(lastUpdated));
+            return this;
+        }
+
+        private static long getMillis(DateTime dateTime) {
+            return dateTime != null ? dateTime.getMillis() : 0;
+        }
+    }
+}
@@ -28,28 +28,84 @@
 
 package org.hisp.dhis.android.dashboard.utils;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
 
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.picasso.LruCache;
 import com.squareup.picasso.OkHttpDownloader;
 import com.squareup.picasso.Picasso;
 
 import org.hisp.dhis.android.sdk.core.network.RepositoryManager;
 
 public final class PicassoProvider {
+    /* decoded images can take 1/7 of heap (same as Picasso's default)
+    or 1/12 on low RAM devices, where the rest of app competes for memory */
+    private static final int MEMORY_CACHE_FRACTION = 7;
+    private static final int LOW_RAM_MEMORY_CACHE_FRACTION = 12;
+
     private static Picasso mPicasso;
+    private static LruCache mMemoryCache;
+    private static ChartImageCache mChartImageCache;
 
     private PicassoProvider() {
     }
 
-    public static Picasso getInstance(Context context) {
+    /* called both from main thread and from sync workers */
+    public static synchronized Picasso getInstance(Context context) {
         if (mPicasso == null) {
-            OkHttpDownloader okHttpDownloader = new OkHttpDownloader(
-                    RepositoryManager.provideOkHttpClient());
+            OkHttpClient okHttpClient = RepositoryManager.provideOkHttpClient();
+            OkHttpDownloader okHttpDownloader = new OkHttpDownloader(okHttpClient);
+            mMemoryCache = new LruCache(calculateMemoryCacheSize(context));
+            mChartImageCache = new ChartImageCache(context.getApplicationContext(), okHttpClient);
             mPicasso = new Picasso.Builder(context)
                     .downloader(okHttpDownloader)
+                    .addRequestHandler(mChartImageCache)
+                    .memoryCache(mMemoryCache)
+                    // charts and maps are rendered on opaque background,
+                    // so there is no need to spend two more bytes per pixel on alpha
+                    .defaultBitmapConfig(Bitmap.Config.RGB_565)
                     .build();
         }
 
         return mPicasso;
     }
+
+    /* disk cache which backs chart images of Picasso instance */
+    public static synchronized ChartImageCache getChartImageCache(Context context) {
+        getInstance(context);
+        return mChartImageCache;
+    }
+
+    /* releases decoded images when system is running out of memory */
+    public static synchronized void onTrimMemory(int level) {
+        if (mMemoryCache == null) {
+            return;
+        }
+
+        // images are kept while app is just hidden, since user is likely to come back
+        if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return;
+        }
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mMemoryCache.clear();
+        }
+    }
+
+    private static int calculateMemoryCacheSize(Context context) {
+        ActivityManager activityManager = (ActivityManager)
+                context.getSystemService(Context.ACTIVITY_SERVICE);
+        int fraction = isLowRamDevice(activityManager) ?
+                LOW_RAM_MEMORY_CACHE_FRACTION : MEMORY_CACHE_FRACTION;
+        return 1024 * 1024 * activityManager.getMemoryClass() / fraction;
+    }
+
+    private static boolean isLowRamDevice(ActivityManager activityManager) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT &&
+                activityManager.isLowRamDevice();
+    }
 }
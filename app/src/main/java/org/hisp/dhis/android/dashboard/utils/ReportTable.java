@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.hisp.dhis.android.sdk.core.api.Dhis2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report table in form of grid, as it is returned by
+ * api/reportTables/{uid}/data.json. Hidden columns are dropped.
+ */
+public final class ReportTable {
+    /* identifies binary form, should be changed together with it */
+    private static final int BINARY_FORMAT_VERSION = 1;
+
+    private final String mTitle;
+    private final String[] mHeaders;
+    private final boolean[] mDimensionColumns;
+    private final String[][] mRows;
+
+    private ReportTable(String title, String[] headers,
+                        boolean[] dimensionColumns, String[][] rows) {
+        mTitle = title;
+        mHeaders = headers;
+        mDimensionColumns = dimensionColumns;
+        mRows = rows;
+    }
+
+    /**
+     * @param uid    UID of report table.
+     * @param format format of report table as it is named in API, for example html or json.
+     */
+    public static String buildUrl(String uid, String format) {
+        return Dhis2.getServerUrl().newBuilder()
+                .addPathSegment("api").addPathSegment("reportTables")
+                .addPathSegment(uid).addPathSegment("data." + format)
+                .toString();
+    }
+
+    /**
+     * Parses grid from given stream. Stream is read incrementally,
+     * so only parsed values are kept in memory. Stream is not closed.
+     */
+    public static ReportTable fromJson(InputStream inputStream) throws IOException {
+        return fromJson(inputStream, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parses top left corner of grid from given stream. Reading stops
+     * as soon as headers and given number of rows are parsed, so rest
+     * of table does not even have to be downloaded. Stream is not closed.
+     */
+    public static ReportTable fromJson(InputStream inputStream,
+                                       int maxRows, int maxColumns) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
+
+        String title = null;
+        List<Header> headers = new ArrayList<>();
+        List<String[]> rows = new ArrayList<>();
+        boolean hasHeaders = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("title".equals(name)) {
+                title = nextString(reader);
+            } else if ("headers".equals(name)) {
+                readHeaders(reader, headers);
+                hasHeaders = true;
+            } else if ("rows".equals(name)) {
+                if (!readRows(reader, rows, maxRows, hasHeaders)) {
+                    break;
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        return build(title, headers, rows, maxColumns);
+    }
+
+    /**
+     * Reads table written by {@link #writeTo(DataOutput)}.
+     */
+    public static ReportTable readFrom(DataInput input) throws IOException {
+        int version = input.readInt();
+        if (version != BINARY_FORMAT_VERSION) {
+            throw new IOException("Unsupported version of report table: " + version);
+        }
+
+        String title = input.readUTF();
+        int columnCount = input.readShort();
+        int rowCount = input.readInt();
+
+        String[] headers = new String[columnCount];
+        boolean[] dimensionColumns = new boolean[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            headers[column] = input.readUTF();
+            dimensionColumns[column] = input.readBoolean();
+        }
+
+        String[][] rows = new String[rowCount][columnCount];
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                rows[row][column] = input.readUTF();
+            }
+        }
+
+        return new ReportTable(title.isEmpty() ? null : title, headers, dimensionColumns, rows);
+    }
+
+    /**
+     * Writes table in compact binary form, which can be read
+     * back without any parsing apart from reading strings.
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(BINARY_FORMAT_VERSION);
+        output.writeUTF(mTitle != null ? mTitle : "");
+        output.writeShort(mHeaders.length);
+        output.writeInt(mRows.length);
+
+        for (int column = 0; column < mHeaders.length; column++) {
+            output.writeUTF(mHeaders[column]);
+            output.writeBoolean(mDimensionColumns[column]);
+        }
+
+        for (String[] row : mRows) {
+            for (String value : row) {
+                output.writeUTF(value);
+            }
+        }
+    }
+
+    private static void readHeaders(JsonReader reader, List<Header> headers) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Header header = new Header();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("name".equals(name)) {
+                    header.name = nextString(reader);
+                } else if ("column".equals(name)) {
+                    header.column = nextString(reader);
+                } else if ("meta".equals(name)) {
+                    header.meta = nextBoolean(reader);
+                } else if ("hidden".equals(name)) {
+                    header.hidden = nextBoolean(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            headers.add(header);
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads at most given number of rows. Rest of rows is skipped,
+     * unless stopping is allowed.
+     *
+     * @return false if reading was stopped before end of rows.
+     */
+    private static boolean readRows(JsonReader reader, List<String[]> rows,
+                                    int maxRows, boolean canStop) throws IOException {
+        List<String> row = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (rows.size() >= maxRows) {
+                if (canStop) {
+                    return false;
+                }
+
+                reader.skipValue();
+                continue;
+            }
+
+            row.clear();
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                row.add(nextString(reader));
+            }
+            reader.endArray();
+
+            rows.add(row.toArray(new String[row.size()]));
+        }
+        reader.endArray();
+        return true;
+    }
+
+    /* returns value of any primitive type as string, empty string for null */
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return "";
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+
+    private static ReportTable build(String title, List<Header> headers,
+                                     List<String[]> rows, int maxColumns) {
+        int columnCount = 0;
+        for (Header header : headers) {
+            if (!header.hidden) {
+                columnCount++;
+            }
+        }
+        columnCount = Math.min(columnCount, maxColumns);
+
+        String[] headerNames = new String[columnCount];
+        boolean[] dimensionColumns = new boolean[columnCount];
+        int[] sourceColumns = new int[columnCount];
+        for (int source = 0, column = 0; source < headers.size(); source++) {
+            Header header = headers.get(source);
+            if (!header.hidden && column < columnCount) {
+                headerNames[column] = header.column != null ? header.column :
+                        (header.name != null ? header.name : "");
+                dimensionColumns[column] = header.meta;
+                sourceColumns[column] = source;
+                column++;
+            }
+        }
+
+        String[][] visibleRows = new String[rows.size()][];
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            if (columnCount == headers.size() && columnCount == row.length) {
+                visibleRows[i] = row;
+                continue;
+            }
+
+            visibleRows[i] = new String[columnCount];
+            for (int column = 0; column < columnCount; column++) {
+                visibleRows[i][column] = sourceColumns[column] < row.length ?
+                        row[sourceColumns[column]] : "";
+            }
+        }
+
+        return new ReportTable(title, headerNames, dimensionColumns, visibleRows);
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public int getColumnCount() {
+        return mHeaders.length;
+    }
+
+    public int getRowCount() {
+        return mRows.length;
+    }
+
+    public String getHeader(int column) {
+        return mHeaders[column];
+    }
+
+    public String getValue(int row, int column) {
+        return mRows[row][column];
+    }
+
+    /* dimension columns contain names of periods, org units or data elements, rest are values */
+    public boolean isDimensionColumn(int column) {
+        return mDimensionColumns[column];
+    }
+
+    private static class Header {
+        String name;
+        String column;
+        boolean meta;
+        boolean hidden;
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.joda.time.DateTime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
+
+/**
+ * Disk cache for report tables in one of formats provided by API
+ * (HTML for web view, JSON for native table). Entries are keyed by UID and
+ * lastUpdated of element, compressed with GZIP and carry validators
+ * (ETag and Last-Modified) of response, so that they can be revalidated
+ * with conditional request. When there is no entry for current
+ * lastUpdated, previously cached version of the same table is returned.
+ *
+ * Content is never held in memory as a whole: it is streamed from network
+ * into cache and from cache into its consumer, so that memory usage does
+ * not depend on size of table.
+ *
+ * Every stored entry is written to a temporary file and renamed to a file
+ * of its own, so files are never overwritten. Files of entries which are
+ * still referenced by their readers are not deleted by cleanup.
+ */
+public final class ReportTableCache {
+    private static final String TAG = ReportTableCache.class.getSimpleName();
+    private static final String CACHE_DIRECTORY = "reportTables";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final long MAX_CACHE_SIZE = 8 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /* file starts with SHA-1 digest of content, followed by validators and compressed content */
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+    private static final int DIGEST_LENGTH = 20;
+
+    /* one instance per format, all of them share directory */
+    private static final Map<String, ReportTableCache> mCaches = new HashMap<>();
+
+    /* guards files of all instances */
+    private static final Object mLock = new Object();
+
+    /* files of entries which are still referenced (e.g. shown in web view) are
+    never deleted. Entries are compared by identity. Guarded by mLock */
+    private static final Set<Entry> mLiveEntries =
+            Collections.newSetFromMap(new WeakHashMap<Entry, Boolean>());
+
+    /* each stored entry gets its own file, so no file is ever overwritten */
+    private static final AtomicLong mSequence = new AtomicLong(System.currentTimeMillis());
+
+    private final File mDirectory;
+    private final String mFileExtension;
+
+    private ReportTableCache(Context context, String format) {
+        mDirectory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        mFileExtension = '.' + format + ".gz";
+    }
+
+    /**
+     * @param format format of report table as it is named in API: html or json.
+     */
+    public static synchronized ReportTableCache getInstance(Context context, String format) {
+        isNull(context, "Context must not be null");
+        isNull(format, "Format must not be null");
+
+        ReportTableCache cache = mCaches.get(format);
+        if (cache == null) {
+            cache = new ReportTableCache(context.getApplicationContext(), format);
+            mCaches.put(format, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Reads validators of cached entry. Content itself is read through {@link #open(Entry)}.
+     *
+     * @param uid         UID of report table.
+     * @param lastUpdated last time report table was updated, can be null.
+     * @return cached entry or null, if table was never cached.
+     */
+    public Entry get(String uid, DateTime lastUpdated) {
+        synchronized (mLock) {
+            File file = findFile(uid, lastUpdated);
+            if (file == null) {
+                return null;
+            }
+
+            try {
+                // last modified time is used as access time by trimToSize()
+                file.setLastModified(System.currentTimeMillis());
+                return newEntry(file);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to read cached report table " + file.getName(), e);
+                if (!isInUse(file)) {
+                    file.delete();
+                }
+                return null;
+            }
+        }
+    }
+
+    /* returns true if there is entry for exactly this version of table */
+    public boolean contains(String uid, DateTime lastUpdated) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return false;
+        }
+
+        String versionPrefix = getVersionPrefix(uid, lastUpdated);
+        for (File file : files) {
+            if (file.getName().startsWith(versionPrefix) &&
+                    file.getName().endsWith(mFileExtension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies content from given stream into cache. Stream is not closed.
+     * If thread is interrupted, copying is aborted and nothing is stored.
+     *
+     * @return stored entry.
+     */
+    public Entry put(String uid, DateTime lastUpdated, InputStream content,
+                     String eTag, String lastModified) throws IOException {
+        // writing to temporary file first, so concurrent
+        // readers never see partially written entry
+        File tempFile = newTempFile(uid);
+        try {
+            writeEntry(tempFile, content, eTag, lastModified);
+
+            synchronized (mLock) {
+                File file = store(tempFile, uid, lastUpdated);
+                Entry entry = newEntry(file);
+                trimToSize();
+                return entry;
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Stores entry of previous version of table as given version,
+     * when server confirmed that its content is still up to date.
+     */
+    public void moveTo(Entry entry, String uid, DateTime lastUpdated) {
+        // file of entry can be read by its owner any time, so it is copied, not renamed
+        File tempFile = null;
+        try {
+            tempFile = newTempFile(uid);
+            copy(entry.mFile, tempFile);
+
+            synchronized (mLock) {
+                store(tempFile, uid, lastUpdated);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to move cached report table " + entry.mFile.getName(), e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /* returns stream of decompressed content, which should be closed by caller */
+    public InputStream open(Entry entry) throws IOException {
+        FileInputStream inputStream = new FileInputStream(entry.mFile);
+        try {
+            inputStream.getChannel().position(entry.mContentOffset);
+            return new GZIPInputStream(new BufferedInputStream(inputStream), BUFFER_SIZE);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    private File newTempFile(String uid) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs() && !mDirectory.exists()) {
+            throw new IOException("Failed to create cache directory");
+        }
+
+        return new File(mDirectory, uid + '_' + mSequence.incrementAndGet() + TEMP_FILE_EXTENSION);
+    }
+
+    /* should be called while holding mLock, returns file of new entry */
+    private File store(File tempFile, String uid, DateTime lastUpdated) throws IOException {
+        File file = new File(mDirectory, getVersionPrefix(uid, lastUpdated) +
+                mSequence.incrementAndGet() + mFileExtension);
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tempFile.getName());
+        }
+
+        // newer copy of table makes other ones useless, unless they are still read
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            String prefix = uid + '_';
+            for (File otherFile : files) {
+                if (otherFile.getName().startsWith(prefix) &&
+                        otherFile.getName().endsWith(mFileExtension) &&
+                        !otherFile.equals(file) && !isInUse(otherFile)) {
+                    otherFile.delete();
+                }
+            }
+        }
+        return file;
+    }
+
+    /* should be called while holding mLock */
+    private static Entry newEntry(File file) throws IOException {
+        Entry entry = readEntry(file);
+        mLiveEntries.add(entry);
+        return entry;
+    }
+
+    /* should be called while holding mLock */
+    private static boolean isInUse(File file) {
+        for (Entry entry : mLiveEntries) {
+            if (entry.mFile.equals(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getVersionPrefix(String uid, DateTime lastUpdated) {
+        return uid + '_' + (lastUpdated != null ? lastUpdated.getMillis() : 0) + '_';
+    }
+
+    /* returns newest file of given version, or newest file of any other version */
+    private File findFile(String uid, DateTime lastUpdated) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return null;
+        }
+
+        String prefix = uid + '_';
+        String versionPrefix = getVersionPrefix(uid, lastUpdated);
+        File version = null;
+        File otherVersion = null;
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(prefix) || !name.endsWith(mFileExtension)) {
+                continue;
+            }
+
+            if (name.startsWith(versionPrefix)) {
+                version = getNewer(version, file);
+            } else {
+                otherVersion = getNewer(otherVersion, file);
+            }
+        }
+        return version != null ? version : otherVersion;
+    }
+
+    private File getNewer(File file, File candidate) {
+        return file == null || getSequence(candidate) > getSequence(file) ? candidate : file;
+    }
+
+    private long getSequence(File file) {
+        String name = file.getName();
+        name = name.substring(0, name.length() - mFileExtension.length());
+        try {
+            return Long.parseLong(name.substring(name.lastIndexOf('_') + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        InputStream inputStream = new FileInputStream(source);
+        try {
+            OutputStream outputStream = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static Entry readEntry(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            byte[] digest = new byte[DIGEST_LENGTH];
+            randomAccessFile.readFully(digest);
+            String eTag = randomAccessFile.readUTF();
+            String lastModified = randomAccessFile.readUTF();
+
+            return new Entry(file, randomAccessFile.getFilePointer(), digest,
+                    eTag.isEmpty() ? null : eTag,
+                    lastModified.isEmpty() ? null : lastModified);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void writeEntry(File file, InputStream content,
+                                   String eTag, String lastModified) throws IOException {
+        MessageDigest messageDigest = newMessageDigest();
+
+        DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            // digest is known only after content is written
+            outputStream.write(new byte[DIGEST_LENGTH]);
+            outputStream.writeUTF(eTag != null ? eTag : "");
+            outputStream.writeUTF(lastModified != null ? lastModified : "");
+
+            GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = content.read(buffer)) != -1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Caching of report table was interrupted");
+                }
+
+                messageDigest.update(buffer, 0, count);
+                gzipStream.write(buffer, 0, count);
+            }
+            gzipStream.finish();
+        } finally {
+            outputStream.close();
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.write(messageDigest.digest());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* evicts least recently used tables, should be called while holding mLock */
+    private void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+
+        if (size <= MAX_CACHE_SIZE) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (size <= MAX_CACHE_SIZE) {
+                break;
+            }
+
+            long length = file.length();
+            if (!file.getName().endsWith(TEMP_FILE_EXTENSION) && !isInUse(file) && file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    public static final class Entry {
+        private final File mFile;
+        private final long mContentOffset;
+        private final byte[] mDigest;
+        private final String mETag;
+        private final String mLastModified;
+
+        private Entry(File file, long contentOffset, byte[] digest,
+                      String eTag, String lastModified) {
+            mFile = file;
+            mContentOffset = contentOffset;
+            mDigest = digest;
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        /* can be null, if server did not send ETag header */
+        public String getETag() {
+            return mETag;
+        }
+
+        /* can be null, if server did not send Last-Modified header */
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        public boolean hasSameContent(Entry entry) {
+            return entry != null && Arrays.equals(mDigest, entry.mDigest);
+        }
+    }
+}
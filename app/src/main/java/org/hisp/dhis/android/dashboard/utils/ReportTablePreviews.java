@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.joda.time.DateTime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hisp.dhis.android.sdk.models.utils.Preconditions.isNull;
+
+/**
+ * Keeps top left corners of report tables, which are shown in dashboard
+ * cards. Data of table changes without changing lastUpdated of element, so
+ * previews older than {@link #MAX_AGE} are recomputed on content sync, even
+ * if dashboards themselves did not change. Previews are stored in binary form
+ * ({@link ReportTable#writeTo(java.io.DataOutput)}), keyed by UID and
+ * lastUpdated of element. Previews which are read from disk or stored are
+ * also kept in memory, so that cards can be bound without any I/O.
+ */
+public final class ReportTablePreviews {
+    private static final String TAG = ReportTablePreviews.class.getSimpleName();
+    private static final String DIRECTORY = "reportTablePreviews";
+    private static final String FILE_EXTENSION = ".bin";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    /* size of preview, chosen to fit dashboard card */
+    public static final int MAX_ROWS = 5;
+    public static final int MAX_COLUMNS = 4;
+
+    /* age after which preview is recomputed */
+    public static final long MAX_AGE = TimeUnit.HOURS.toMillis(1);
+
+    /* number of previews kept in memory */
+    private static final int MEMORY_CACHE_SIZE = 64;
+
+    private static ReportTablePreviews mPreviews;
+
+    private final File mDirectory;
+    private final LruCache<String, ReportTable> mMemoryCache;
+
+    private ReportTablePreviews(Context context) {
+        mDirectory = new File(context.getFilesDir(), DIRECTORY);
+        mMemoryCache = new LruCache<>(MEMORY_CACHE_SIZE);
+    }
+
+    public static synchronized void init(Context context) {
+        isNull(context, "Context must not be null");
+
+        if (mPreviews == null) {
+            mPreviews = new ReportTablePreviews(context.getApplicationContext());
+        }
+    }
+
+    public static synchronized ReportTablePreviews getInstance() {
+        if (mPreviews == null) {
+            throw new IllegalStateException("ReportTablePreviews must be initialized first");
+        }
+
+        return mPreviews;
+    }
+
+    /* returns preview only if it is in memory, can be called while binding views */
+    public ReportTable peek(String uid, DateTime lastUpdated) {
+        return mMemoryCache.get(getFileName(uid, lastUpdated));
+    }
+
+    /* returns preview reading it from disk if necessary, should not be called from main thread */
+    public ReportTable load(String uid, DateTime lastUpdated) {
+        String fileName = getFileName(uid, lastUpdated);
+        ReportTable preview = mMemoryCache.get(fileName);
+        if (preview != null) {
+            return preview;
+        }
+
+        File file = new File(mDirectory, fileName);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            DataInputStream inputStream = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                preview = ReportTable.readFrom(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read report table preview " + fileName, e);
+            file.delete();
+            return null;
+        }
+
+        mMemoryCache.put(fileName, preview);
+        return preview;
+    }
+
+    /* tells if preview of given version was stored less than MAX_AGE ago */
+    public boolean isFresh(String uid, DateTime lastUpdated) {
+        File file = new File(mDirectory, getFileName(uid, lastUpdated));
+        long age = System.currentTimeMillis() - file.lastModified();
+
+        // lastModified() is 0 for missing file
+        return file.exists() && age >= 0 && age < MAX_AGE;
+    }
+
+    /* synchronized with clear(), so preview written during logout is not left behind */
+    public synchronized void put(String uid, DateTime lastUpdated, ReportTable preview) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs() && !mDirectory.exists()) {
+            throw new IOException("Failed to create directory for previews");
+        }
+
+        String fileName = getFileName(uid, lastUpdated);
+        File file = new File(mDirectory, fileName);
+        File tempFile = new File(mDirectory, fileName + TEMP_FILE_EXTENSION);
+        try {
+            DataOutputStream outputStream = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                preview.writeTo(outputStream);
+            } finally {
+                outputStream.close();
+            }
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tempFile.getName());
+            }
+        } finally {
+            tempFile.delete();
+        }
+
+        mMemoryCache.put(fileName, preview);
+        deleteOtherVersions(uid, file);
+    }
+
+    public synchronized void clear() {
+        mMemoryCache.evictAll();
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (!file.delete()) {
+                Log.w(TAG, "Failed to delete report table preview " + file.getName());
+            }
+        }
+    }
+
+    /* newer version of table makes older ones useless */
+    private void deleteOtherVersions(String uid, File file) {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        String prefix = uid + '_';
+        for (File candidate : files) {
+            if (candidate.getName().startsWith(prefix) &&
+                    candidate.getName().endsWith(FILE_EXTENSION) && !candidate.equals(file)) {
+                candidate.delete();
+            }
+        }
+    }
+
+    private static String getFileName(String uid, DateTime lastUpdated) {
+        return uid + '_' + (lastUpdated != null ? lastUpdated.getMillis() : 0) + FILE_EXTENSION;
+    }
+}
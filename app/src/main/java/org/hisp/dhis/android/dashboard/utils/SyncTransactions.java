@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks syncs which are writing to database. While any of them is in
+ * progress, loaders hold back their reloads (see {@link ThrottledDbLoader}) and
+ * are notified once the last one has ended.
+ */
+public final class SyncTransactions {
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final AtomicInteger sInProgress = new AtomicInteger();
+
+    /* accessed only from main thread */
+    private static final List<Listener> sListeners = new ArrayList<>();
+
+    private SyncTransactions() {
+        // no instances
+    }
+
+    public static void begin() {
+        sInProgress.incrementAndGet();
+    }
+
+    /**
+     * Should be called after each {@link #begin()}, also when sync has failed.
+     */
+    public static void end() {
+        if (sInProgress.decrementAndGet() > 0) {
+            return;
+        }
+
+        sMainHandler.post(new Runnable() {
+
+            @Override
+            public void run() {
+                // another sync could have started in the meantime
+                if (isInProgress()) {
+                    return;
+                }
+
+                for (Listener listener : new ArrayList<>(sListeners)) {
+                    listener.onSyncFinished();
+                }
+            }
+        });
+    }
+
+    public static boolean isInProgress() {
+        return sInProgress.get() > 0;
+    }
+
+    static void register(Listener listener) {
+        if (!sListeners.contains(listener)) {
+            sListeners.add(listener);
+        }
+    }
+
+    static void unregister(Listener listener) {
+        sListeners.remove(listener);
+    }
+
+    interface Listener {
+        void onSyncFinished();
+    }
+}
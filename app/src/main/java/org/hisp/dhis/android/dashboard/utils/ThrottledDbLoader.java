@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+
+import org.hisp.dhis.android.sdk.core.persistence.loaders.DbLoader;
+import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
+import org.hisp.dhis.android.sdk.core.persistence.loaders.TrackedTable;
+
+import java.util.List;
+
+/**
+ * DbLoader which coalesces reloads. Changes of tracked tables cause
+ * at most one reload per {@link #UPDATE_THROTTLE} milliseconds, and while sync
+ * is in progress they are held back until it ends (see {@link SyncTransactions}).
+ */
+public class ThrottledDbLoader<T> extends DbLoader<T> implements SyncTransactions.Listener {
+    public static final long UPDATE_THROTTLE = 500;
+
+    /* set when tracked tables were changed during sync */
+    private volatile boolean mChangedDuringSync;
+
+    public ThrottledDbLoader(Context context, List<TrackedTable> trackedTables, Query<T> query) {
+        super(context, trackedTables, query);
+        setUpdateThrottle(UPDATE_THROTTLE);
+    }
+
+    @Override
+    public void onContentChanged() {
+        if (SyncTransactions.isInProgress()) {
+            mChangedDuringSync = true;
+            return;
+        }
+
+        super.onContentChanged();
+    }
+
+    @Override
+    public void onSyncFinished() {
+        if (mChangedDuringSync) {
+            mChangedDuringSync = false;
+            super.onContentChanged();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        SyncTransactions.register(this);
+        super.onStartLoading();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        SyncTransactions.unregister(this);
+    }
+}
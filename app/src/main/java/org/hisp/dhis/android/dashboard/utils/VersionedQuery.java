@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.dashboard.utils;
+
+import android.content.Context;
+
+import org.hisp.dhis.android.sdk.core.persistence.loaders.Query;
+
+/**
+ * Query over one slice of data (see {@link ChangeVersions}). Loaders are notified
+ * about changes of whole tables, so the previous result is returned as long
+ * as the slice itself has not been reported as changed.
+ */
+public abstract class VersionedQuery<T> implements Query<T> {
+    private final Class<?> mType;
+    private final long mId;
+
+    /* loader does not run queries concurrently */
+    private T mResult;
+    private long mVersion;
+
+    public VersionedQuery(Class<?> type, long id) {
+        mType = type;
+        mId = id;
+    }
+
+    @Override
+    public final T query(Context context) {
+        // version is taken before query, so changes made
+        // while it runs are picked up by the next reload
+        long version = ChangeVersions.getVersion(mType, mId);
+        if (mResult != null && mVersion == version) {
+            return mResult;
+        }
+
+        mResult = querySlice(context);
+        mVersion = version;
+        return mResult;
+    }
+
+    protected abstract T querySlice(Context context);
+}
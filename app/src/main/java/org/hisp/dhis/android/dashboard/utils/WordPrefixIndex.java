@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015, University of Oslo
+ *
+ * All rights reserved.
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hisp.dhis.android.dashboard.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds labels which start with given prefix or contain a word
+ * starting with it. Words of all labels are kept in sorted array, so lookup
+ * is a binary search followed by a scan over matching words only.
+ * Matching is case insensitive; prefixes are expected to be lower cased.
+ */
+public final class WordPrefixIndex {
+    private static final Comparator<Word> WORD_COMPARATOR = new Comparator<Word>() {
+
+        @Override
+        public int compare(Word lhs, Word rhs) {
+            return lhs.text.compareTo(rhs.text);
+        }
+    };
+
+    /* lower cased labels */
+    private final String[] mLabels;
+
+    /* sorted words and positions of labels they belong to */
+    private final String[] mWords;
+    private final int[] mPositions;
+
+    public WordPrefixIndex(List<String> labels) {
+        mLabels = new String[labels.size()];
+
+        List<Word> words = new ArrayList<>();
+        for (int position = 0; position < labels.size(); position++) {
+            String label = labels.get(position);
+            mLabels[position] = label == null ? "" : label.toLowerCase();
+
+            for (String word : mLabels[position].split(" ")) {
+                if (!word.isEmpty()) {
+                    words.add(new Word(word, position));
+                }
+            }
+        }
+
+        Collections.sort(words, WORD_COMPARATOR);
+        mWords = new String[words.size()];
+        mPositions = new int[words.size()];
+        for (int i = 0; i < words.size(); i++) {
+            mWords[i] = words.get(i).text;
+            mPositions[i] = words.get(i).position;
+        }
+    }
+
+    public int size() {
+        return mLabels.length;
+    }
+
+    /**
+     * Returns positions of matching labels in ascending order.
+     */
+    public int[] find(String prefix) {
+        if (prefix.isEmpty()) {
+            int[] positions = new int[mLabels.length];
+            for (int position = 0; position < positions.length; position++) {
+                positions[position] = position;
+            }
+            return positions;
+        }
+
+        // labels can match only by their beginning if prefix spans several
+        // words, so candidates are labels which contain the first of them
+        int separator = prefix.indexOf(' ');
+        String word = separator < 0 ? prefix : prefix.substring(0, separator);
+        if (word.isEmpty()) {
+            return narrow(find(""), prefix);
+        }
+
+        BitSet matches = new BitSet(mLabels.length);
+        int index = Arrays.binarySearch(mWords, word);
+        for (int i = index < 0 ? -(index + 1) : index;
+             i < mWords.length && mWords[i].startsWith(word); i++) {
+            matches.set(mPositions[i]);
+        }
+
+        int[] positions = new int[matches.cardinality()];
+        for (int i = 0, position = matches.nextSetBit(0); position >= 0;
+             i++, position = matches.nextSetBit(position + 1)) {
+            positions[i] = position;
+        }
+        return separator < 0 ? positions : narrow(positions, prefix);
+    }
+
+    /**
+     * Keeps only those of given positions which match prefix. Used when prefix
+     * is extended, since labels matching it are subset of previous result.
+     */
+    public int[] narrow(int[] positions, String prefix) {
+        String wordPrefix = prefix.indexOf(' ') < 0 ? " " + prefix : null;
+
+        int count = 0;
+        int[] matches = new int[positions.length];
+        for (int position : positions) {
+            String label = mLabels[position];
+            if (label.startsWith(prefix) ||
+                    (wordPrefix != null && label.contains(wordPrefix))) {
+                matches[count++] = position;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private static final class Word {
+        final String text;
+        final int position;
+
+        Word(String text, int position) {
+            this.text = text;
+            this.position = position;
+        }
+    }
+}